@@ -0,0 +1,279 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * ArchiveInspector.java
+ *
+ * Counts the text inside gzip files and zip archives without unpacking them
+ * to disk. The format is recognised by its magic bytes, not by the file name.
+ * Each zip entry is counted separately; a gzip file counts as a single entry.
+ *
+ * Decompression and counting are pipelined: a background thread inflates the
+ * archive into a small ring of reusable buffers while the calling thread
+ * counts the buffers that are already full, so counting never waits on
+ * inflate as long as inflating is the slower of the two.
+ */
+public class ArchiveInspector {
+
+    /**
+     * Kinds of file recognised by their first bytes.
+     */
+    public enum Format {
+        PLAIN, GZIP, ZIP
+    }
+
+    // Size and number of buffers passed from the inflating thread to the counting thread
+    private static final int CHUNK_BYTES = 64 * 1024;
+    private static final int CHUNKS_IN_FLIGHT = 8;
+
+    // Threads that inflate archives; daemons so they never keep the JVM alive
+    private static final ExecutorService INFLATERS = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "archive-inflater");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Looks at the first bytes of a file to tell whether it is compressed.
+     *
+     * @param channel Open channel on the file; its position is not changed.
+     * @return The format.
+     * @throws IOException If the file cannot be read.
+     */
+    public static Format detect(FileChannel channel) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(4);
+        while (magic.hasRemaining() && channel.read(magic, magic.position()) > 0) {
+            // A short read is retried until four bytes are in or the file ends
+        }
+        if (magic.position() >= 2 && (magic.get(0) & 0xFF) == 0x1F && (magic.get(1) & 0xFF) == 0x8B) {
+            return Format.GZIP;
+        }
+        // "PK\3\4" starts a zip entry, "PK\5\6" an empty zip archive
+        if (magic.position() == 4 && magic.get(0) == 'P' && magic.get(1) == 'K'
+                && ((magic.get(2) == 3 && magic.get(3) == 4) || (magic.get(2) == 5 && magic.get(3) == 6))) {
+            return Format.ZIP;
+        }
+        return Format.PLAIN;
+    }
+
+    /**
+     * Looks at the first bytes of a file to tell whether it is compressed.
+     *
+     * @param path The file.
+     * @return The format; PLAIN for anything that is not a regular file.
+     * @throws IOException If the file cannot be read.
+     */
+    public static Format detect(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return Format.PLAIN;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return detect(channel);
+        }
+    }
+
+    /**
+     * Counts every entry of a compressed file.
+     *
+     * @param path   The gzip or zip file.
+     * @param format Its format, as returned by detect.
+     * @return The name and counts of every entry, in archive order. A gzip file has one
+     *         entry named after the file without its ".gz" suffix; zip directories are
+     *         skipped, and zip entries that share a name are all listed.
+     * @throws java.nio.charset.MalformedInputException If an entry is not valid UTF-8.
+     * @throws IOException If the archive cannot be read or is corrupt.
+     */
+    public static List<Map.Entry<String, InspectionResult>> inspectEntries(Path path, Format format)
+            throws IOException {
+        return inspectEntries(path, format, null);
+    }
+
+    /**
+     * Counts every entry of a compressed file, showing the decompressed bytes to an observer as well.
+     *
+     * @param path     The gzip or zip file.
+     * @param format   Its format, as returned by detect.
+     * @param observer Observer of the decompressed content of all entries in turn, or null.
+     * @return The name and counts of every entry, in archive order.
+     * @throws java.nio.charset.MalformedInputException If an entry is not valid UTF-8.
+     * @throws IOException If the archive cannot be read or is corrupt, or the observer fails.
+     */
+    public static List<Map.Entry<String, InspectionResult>> inspectEntries(
+            Path path, Format format, ContentObserver observer) throws IOException {
+        Pipeline pipeline = new Pipeline(observer);
+        Future<?> inflater = INFLATERS.submit(() -> pipeline.produce(path, format));
+
+        try {
+            return pipeline.consume();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while inspecting " + path, e);
+        } finally {
+            // Stops the inflater if counting failed part way through
+            inflater.cancel(true);
+        }
+    }
+
+    /**
+     * Adds up the counts of all entries.
+     *
+     * @param entries Name and counts of every entry.
+     * @return The total.
+     */
+    public static InspectionResult total(List<Map.Entry<String, InspectionResult>> entries) {
+        InspectionResult total = new InspectionResult(0, 0, 0, 0, false);
+        for (Map.Entry<String, InspectionResult> entry : entries) {
+            total = total.plus(entry.getValue());
+        }
+        return total;
+    }
+
+    /**
+     * One message from the inflating thread to the counting thread.
+     */
+    private static class Chunk {
+        static final int START = 0;   // A new entry begins; name is set
+        static final int DATA = 1;    // data[0, length) belongs to the current entry
+        static final int END = 2;     // The current entry is complete
+        static final int FAILED = 3;  // Inflating failed; error is set
+        static final int DONE = 4;    // No more entries
+
+        final int kind;
+        final String name;
+        final byte[] data;
+        final int length;
+        final IOException error;
+
+        Chunk(int kind, String name, byte[] data, int length, IOException error) {
+            this.kind = kind;
+            this.name = name;
+            this.data = data;
+            this.length = length;
+            this.error = error;
+        }
+    }
+
+    /**
+     * The hand-off between the inflating and the counting thread. Full chunks
+     * travel one way, emptied buffers travel back, so no buffer is allocated
+     * after the first few.
+     */
+    private static class Pipeline {
+        private final BlockingQueue<Chunk> full = new ArrayBlockingQueue<>(CHUNKS_IN_FLIGHT + 4);
+        private final BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(CHUNKS_IN_FLIGHT);
+        private final ContentObserver observer;
+
+        Pipeline(ContentObserver observer) {
+            this.observer = observer;
+            for (int i = 0; i < CHUNKS_IN_FLIGHT; i++) {
+                free.add(new byte[CHUNK_BYTES]);
+            }
+        }
+
+        /**
+         * Inflates the archive and queues its content; runs on an inflater thread.
+         */
+        Void produce(Path path, Format format) throws InterruptedException {
+            try (InputStream raw = new BufferedInputStream(Files.newInputStream(path), CHUNK_BYTES)) {
+                if (format == Format.GZIP) {
+                    String name = path.getFileName().toString();
+                    if (name.toLowerCase().endsWith(".gz")) {
+                        name = name.substring(0, name.length() - 3);
+                    }
+                    pump(name, new GZIPInputStream(raw, CHUNK_BYTES));
+                } else {
+                    ZipInputStream zip = new ZipInputStream(raw);
+                    ZipEntry entry;
+                    while ((entry = zip.getNextEntry()) != null) {
+                        if (!entry.isDirectory()) {
+                            pump(entry.getName(), zip);
+                        }
+                    }
+                }
+                full.put(new Chunk(Chunk.DONE, null, null, 0, null));
+            } catch (IOException e) {
+                full.put(new Chunk(Chunk.FAILED, null, null, 0, e));
+            } catch (RuntimeException | Error e) {
+                // E.g. the IllegalArgumentException ZipInputStream throws for an entry name that is
+                // not valid UTF-8: the counting thread must hear of it, or it waits forever
+                full.put(new Chunk(Chunk.FAILED, null, null, 0,
+                        new IOException("Cannot read archive " + path + ": " + e, e)));
+            }
+            return null;
+        }
+
+        /**
+         * Queues one entry's content, read until the stream reports its end.
+         */
+        private void pump(String name, InputStream in) throws IOException, InterruptedException {
+            full.put(new Chunk(Chunk.START, name, null, 0, null));
+            while (true) {
+                byte[] buffer = free.take();
+                int length = in.readNBytes(buffer, 0, buffer.length);
+                if (length == 0) {
+                    free.put(buffer);
+                    break;
+                }
+                full.put(new Chunk(Chunk.DATA, null, buffer, length, null));
+            }
+            full.put(new Chunk(Chunk.END, null, null, 0, null));
+        }
+
+        /**
+         * Counts the queued content; runs on the calling thread.
+         */
+        List<Map.Entry<String, InspectionResult>> consume() throws IOException, InterruptedException {
+            // A list, not a map: a zip archive may hold several entries with the same name
+            List<Map.Entry<String, InspectionResult>> results = new ArrayList<>();
+            TextCounter counter = null;
+            String name = null;
+            long bytes = 0;
+
+            while (true) {
+                Chunk chunk = full.take();
+                switch (chunk.kind) {
+                    case Chunk.START:
+                        counter = new TextCounter();
+                        name = chunk.name;
+                        bytes = 0;
+                        break;
+                    case Chunk.DATA:
+                        try {
+                            counter.accept(ByteBuffer.wrap(chunk.data, 0, chunk.length));
+                            if (observer != null) {
+                                observer.accept(ByteBuffer.wrap(chunk.data, 0, chunk.length));
+                            }
+                        } finally {
+                            free.put(chunk.data);
+                        }
+                        bytes += chunk.length;
+                        break;
+                    case Chunk.END:
+                        results.add(Map.entry(name, InspectionResult.of(counter, bytes)));
+                        break;
+                    case Chunk.FAILED:
+                        throw chunk.error;
+                    default:
+                        return results;
+                }
+            }
+        }
+    }
+}
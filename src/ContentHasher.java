@@ -0,0 +1,80 @@
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32C;
+
+/**
+ * ContentHasher.java
+ *
+ * Fingerprints a file's content from the same buffers it is counted from, so
+ * duplicate files can be found without reading them a second time. The CRC32C
+ * is always computed (the JDK uses the CPU's CRC instructions for it, so it
+ * costs next to nothing); SHA-256 can be added when a checksum collision
+ * between different files must be ruled out.
+ */
+public class ContentHasher implements ContentObserver {
+
+    private final CRC32C crc = new CRC32C();
+    private final MessageDigest sha256;
+    private String sha256Hex = null;
+
+    /**
+     * Creates a hasher.
+     *
+     * @param withSha256 Whether to compute a SHA-256 digest as well.
+     */
+    public ContentHasher(boolean withSha256) {
+        MessageDigest digest = null;
+        if (withSha256) {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                // Every Java platform is required to provide SHA-256
+                throw new IllegalStateException(e);
+            }
+        }
+        this.sha256 = digest;
+    }
+
+    @Override
+    public void accept(ByteBuffer chunk) {
+        int position = chunk.position();
+        crc.update(chunk);
+        if (sha256 != null) {
+            chunk.position(position);
+            sha256.update(chunk);
+        }
+    }
+
+    /**
+     * @return The CRC32C of the content seen so far.
+     */
+    public long getCrc32c() {
+        return crc.getValue();
+    }
+
+    /**
+     * Completes the SHA-256 digest; no more content may be given after the first call.
+     *
+     * @return The digest as lower-case hex, or null if it was not asked for.
+     */
+    public String getSha256() {
+        if (sha256 != null && sha256Hex == null) {
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : sha256.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            sha256Hex = hex.toString();
+        }
+        return sha256Hex;
+    }
+
+    /**
+     * @return The hashes as one string, e.g. "crc32c:1a2b3c4d" or "crc32c:1a2b3c4d sha256:...".
+     */
+    public String getFingerprint() {
+        String fingerprint = String.format("crc32c:%08x", getCrc32c());
+        String sha = getSha256();
+        return sha == null ? fingerprint : fingerprint + " sha256:" + sha;
+    }
+}
@@ -0,0 +1,22 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * ContentObserver.java
+ *
+ * Sees the raw bytes of a file while TextInspector counts them, so extra
+ * statistics can be gathered in the same pass instead of reading the file
+ * a second time. Chunks arrive in file order; for a compressed file they are
+ * the decompressed bytes of each entry in turn.
+ */
+public interface ContentObserver {
+
+    /**
+     * Receives the next chunk of content.
+     *
+     * @param chunk The bytes from the buffer's position to its limit. The buffer is
+     *              only valid during the call and may be changed by the observer.
+     * @throws IOException If the observer cannot process the chunk.
+     */
+    void accept(ByteBuffer chunk) throws IOException;
+}
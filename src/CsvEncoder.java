@@ -0,0 +1,163 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * CsvEncoder.java
+ *
+ * Encodes CSV records into one reusable char buffer, as RFC 4180 describes:
+ * a field is quoted only if it contains a comma, a double quote or a line
+ * break, and a double quote inside a quoted field is doubled. Integers are
+ * written digit by digit, without boxing or an intermediate String, so
+ * encoding a record allocates nothing once the buffer has grown to fit it.
+ *
+ * Typical use: reset(), one field(...) call per field, then writeTo(...).
+ * The line break is left to the caller. An encoder is not thread-safe.
+ */
+public class CsvEncoder {
+
+    private char[] buffer;
+    private int length = 0;
+    private boolean firstField = true;
+
+    /**
+     * Creates an encoder with room for a typical record.
+     */
+    public CsvEncoder() {
+        this(128);
+    }
+
+    /**
+     * Creates an encoder.
+     *
+     * @param initialCapacity Initial buffer size in chars; the buffer grows as needed.
+     */
+    public CsvEncoder(int initialCapacity) {
+        buffer = new char[Math.max(initialCapacity, 16)];
+    }
+
+    /**
+     * Starts a new record, discarding the encoded one.
+     *
+     * @return This encoder.
+     */
+    public CsvEncoder reset() {
+        length = 0;
+        firstField = true;
+        return this;
+    }
+
+    /**
+     * Appends a text field, quoting it if needed.
+     *
+     * @param value The field; null is written as an empty field.
+     * @return This encoder.
+     */
+    public CsvEncoder field(CharSequence value) {
+        separate();
+        if (value == null) {
+            return this;
+        }
+        int valueLength = value.length();
+        int quotes = 0;
+        boolean needsQuotes = false;
+        for (int i = 0; i < valueLength; i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                quotes++;
+                needsQuotes = true;
+            } else if (c == ',' || c == '\n' || c == '\r') {
+                needsQuotes = true;
+            }
+        }
+
+        if (!needsQuotes) {
+            ensureCapacity(valueLength);
+            for (int i = 0; i < valueLength; i++) {
+                buffer[length++] = value.charAt(i);
+            }
+            return this;
+        }
+
+        ensureCapacity(valueLength + quotes + 2);
+        buffer[length++] = '"';
+        for (int i = 0; i < valueLength; i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                buffer[length++] = '"';
+            }
+            buffer[length++] = c;
+        }
+        buffer[length++] = '"';
+        return this;
+    }
+
+    /**
+     * Appends an integer field in decimal.
+     *
+     * @param value The field.
+     * @return This encoder.
+     */
+    public CsvEncoder field(int value) {
+        separate();
+        // At most 10 digits and a sign
+        ensureCapacity(11);
+        if (value < 0) {
+            buffer[length++] = '-';
+        } else {
+            value = -value;
+        }
+        // Digits are produced from the negative value, which also covers Integer.MIN_VALUE
+        int digits = 1;
+        for (int rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        int end = length + digits;
+        for (int i = end - 1; i >= length; i--) {
+            buffer[i] = (char) ('0' - value % 10);
+            value /= 10;
+        }
+        length = end;
+        return this;
+    }
+
+    /**
+     * Writes the encoded record.
+     *
+     * @param out Where to write it.
+     * @throws IOException If writing fails.
+     */
+    public void writeTo(Writer out) throws IOException {
+        out.write(buffer, 0, length);
+    }
+
+    /**
+     * @return Number of chars encoded.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return The encoded record.
+     */
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length);
+    }
+
+    private void separate() {
+        if (firstField) {
+            firstField = false;
+        } else {
+            ensureCapacity(1);
+            buffer[length++] = ',';
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+}
@@ -0,0 +1,148 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * CsvEncoderBenchmark.java
+ *
+ * Compares building DataSaver's records with String.format, as it used to,
+ * against CsvEncoder. Both write the same generated records to a Writer that
+ * only counts chars, so the table shows the cost of encoding alone: time and
+ * bytes allocated per record (by the calling thread, as measured by
+ * com.sun.management.ThreadMXBean). For records that need no quoting the two
+ * must produce the same text, which is checked before timing.
+ *
+ * Run with: java CsvEncoderBenchmark [RECORDS]   (default 1000000)
+ */
+public class CsvEncoderBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    // Share of names with a comma or quote, which only the encoder handles correctly
+    private static final double SPECIAL_NAME_SHARE = 0.01;
+
+    /**
+     * One way of writing all records.
+     */
+    private interface Strategy {
+        void run(CountingWriter out) throws IOException;
+    }
+
+    /**
+     * Main method to run the benchmark.
+     *
+     * @param args Number of records.
+     * @throws IOException Never; the writer only counts.
+     */
+    public static void main(String[] args) throws IOException {
+        int count = args.length == 0 ? 1_000_000 : Integer.parseInt(args[0]);
+
+        Random random = new Random(42);
+        String[] firstNames = new String[count];
+        String[] lastNames = new String[count];
+        String[] ids = new String[count];
+        String[] emails = new String[count];
+        int[] years = new int[count];
+        for (int i = 0; i < count; i++) {
+            firstNames[i] = "First" + random.nextInt(10_000);
+            lastNames[i] = random.nextDouble() < SPECIAL_NAME_SHARE
+                    ? "O\"Last, Jr." + i
+                    : "Last" + random.nextInt(10_000);
+            ids[i] = String.format("%06d", random.nextInt(1_000_000));
+            emails[i] = "user" + i + "@example.com";
+            years[i] = DataSaver.MIN_YEAR_OF_BIRTH
+                    + random.nextInt(DataSaver.MAX_YEAR_OF_BIRTH - DataSaver.MIN_YEAR_OF_BIRTH + 1);
+        }
+
+        // Same text wherever no quoting is needed
+        CsvEncoder encoder = new CsvEncoder();
+        for (int i = 0; i < count; i++) {
+            if (lastNames[i].indexOf(',') >= 0) {
+                continue;
+            }
+            String formatted = String.format("%s,%s,%s,%s,%d", firstNames[i], lastNames[i], ids[i], emails[i], years[i]);
+            String encoded = DataSaver.encodeRecord(encoder, firstNames[i], lastNames[i], ids[i], emails[i], years[i])
+                    .toString();
+            if (!formatted.equals(encoded)) {
+                System.out.println("MISMATCH: " + encoded + " expected " + formatted);
+                return;
+            }
+        }
+
+        Strategy format = out -> {
+            for (int i = 0; i < count; i++) {
+                out.write(String.format("%s,%s,%s,%s,%d", firstNames[i], lastNames[i], ids[i], emails[i], years[i]));
+            }
+        };
+        Strategy encode = out -> {
+            for (int i = 0; i < count; i++) {
+                DataSaver.encodeRecord(encoder, firstNames[i], lastNames[i], ids[i], emails[i], years[i]).writeTo(out);
+            }
+        };
+
+        System.out.printf("%-14s %12s %12s %14s%n", "strategy", "ns/record", "records/s", "alloc B/record");
+        measure("String.format", format, count);
+        measure("CsvEncoder", encode, count);
+    }
+
+    private static void measure(String name, Strategy strategy, int count) throws IOException {
+        CountingWriter out = new CountingWriter();
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            strategy.run(out);
+        }
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            strategy.run(out);
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        double records = (double) count * MEASURED_ROUNDS;
+
+        System.out.printf("%-14s %12.1f %12.0f %14.1f%n",
+                name, nanos / records, records / (nanos / 1e9), allocated / records);
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /**
+     * A writer that keeps nothing but a checksum of what it is given, so the JIT cannot drop the work.
+     */
+    private static class CountingWriter extends Writer {
+        long chars = 0;
+        long checksum = 0;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            chars += len;
+            if (len > 0) {
+                checksum += cbuf[off] + cbuf[off + len - 1];
+            }
+        }
+
+        @Override
+        public void write(String str) {
+            chars += str.length();
+            if (!str.isEmpty()) {
+                checksum += str.charAt(0) + str.charAt(str.length() - 1);
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,199 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * DataImporter.java
+ *
+ * Loads records in bulk instead of prompting for them one field at a time.
+ * Each input line holds one record, First,Last,ID,Email,Year, in the CSV form
+ * DataSaver writes (a field with a comma or quote is quoted), and is checked
+ * against the same rules as the prompts in DataSaver: non-empty names, a
+ * six-digit ID, a valid email and a year of birth in range. Fields are trimmed
+ * first, as the prompts trim what is typed. Valid records are written through
+ * a RecordWriter as they are read; each rejected line goes to a separate error file
+ * with its line number and the reason, so it can be corrected and imported
+ * again. Blank lines are skipped.
+ *
+ * The ID and email are checked by the allocation-free validators of
+ * FieldValidators, and nothing is kept in memory between lines, so large
+ * files import at disk speed.
+ */
+public class DataImporter {
+
+    private static final int FIELD_COUNT = 5;
+    private static final int BUFFER_CHARS = 1 << 16;
+
+    private final FieldValidator idValidator = FieldValidators.forRegex(DataSaver.ID_REGEX);
+    private final FieldValidator emailValidator = FieldValidators.forRegex(DataSaver.EMAIL_REGEX);
+    private final String[] fields = new String[FIELD_COUNT];
+    private final CsvEncoder csvRecord = new CsvEncoder();
+    private final StringBuilder quoted = new StringBuilder();
+    private int year;
+
+    private long imported = 0;
+    private long rejected = 0;
+
+    /**
+     * Imports every record of a stream.
+     *
+     * @param in         The records, UTF-8 encoded; left open.
+     * @param writer     Where the valid records are written; left open.
+     * @param errorPath  The file to list rejected lines in; only created if a line is rejected,
+     *                   and an older one is deleted otherwise.
+     * @throws IOException If reading or writing fails.
+     */
+    public void importRecords(InputStream in, RecordWriter writer, Path errorPath) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_CHARS);
+        BufferedWriter errors = null;
+        imported = 0;
+        rejected = 0;
+        Files.deleteIfExists(errorPath);
+
+        try {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+
+                String reason = validate(line);
+                if (reason == null) {
+                    writer.write(DataSaver.encodeRecord(csvRecord, fields[0], fields[1], fields[2], fields[3], year));
+                    imported++;
+                } else {
+                    if (errors == null) {
+                        errors = Files.newBufferedWriter(errorPath, StandardCharsets.UTF_8,
+                                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                    }
+                    errors.write("line " + lineNumber + ": " + reason + ": " + line);
+                    errors.newLine();
+                    rejected++;
+                }
+            }
+        } finally {
+            if (errors != null) {
+                errors.close();
+            }
+        }
+    }
+
+    /**
+     * Splits a line into the trimmed fields (and the parsed year) and checks them.
+     *
+     * @param line One input line.
+     * @return Why the record is rejected, or null if it is valid.
+     */
+    private String validate(String line) {
+        String error = split(line);
+        if (error != null) {
+            return error;
+        }
+
+        // A quoted field is kept as written, so a quoted name may be nothing but whitespace
+        if (fields[0].trim().isEmpty()) {
+            return "first name is empty";
+        }
+        if (fields[1].trim().isEmpty()) {
+            return "last name is empty";
+        }
+        if (!idValidator.isValid(fields[2])) {
+            return "ID must be exactly 6 digits";
+        }
+        if (!emailValidator.isValid(fields[3])) {
+            return "invalid email";
+        }
+        try {
+            year = Integer.parseInt(fields[4]);
+        } catch (NumberFormatException e) {
+            return "year of birth is not a whole number";
+        }
+        if (year < DataSaver.MIN_YEAR_OF_BIRTH || year > DataSaver.MAX_YEAR_OF_BIRTH) {
+            return "year of birth must be between " + DataSaver.MIN_YEAR_OF_BIRTH
+                    + " and " + DataSaver.MAX_YEAR_OF_BIRTH;
+        }
+        return null;
+    }
+
+    /**
+     * Splits a line into FIELD_COUNT fields. A field may be quoted as CsvEncoder writes it
+     * (RFC 4180): inside the quotes a comma is part of the field and "" stands for one
+     * quote, and the field is taken as it is. Unquoted fields are trimmed.
+     *
+     * @param line One input line.
+     * @return Why the line cannot be split, or null if fields now holds its fields.
+     */
+    private String split(String line) {
+        int length = line.length();
+        int position = 0;
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            if (position > length) {
+                return "expected " + FIELD_COUNT + " fields, found " + i;
+            }
+            int start = position;
+            while (start < length && line.charAt(start) <= ' ') {
+                start++; // Whitespace as String.trim() sees it
+            }
+
+            int end; // Index of the comma after the field, or length
+            if (start < length && line.charAt(start) == '"') {
+                quoted.setLength(0);
+                int next = start + 1;
+                while (true) {
+                    int quote = line.indexOf('"', next);
+                    if (quote < 0) {
+                        return "field " + (i + 1) + " has no closing quote";
+                    }
+                    quoted.append(line, next, quote);
+                    if (quote + 1 < length && line.charAt(quote + 1) == '"') {
+                        quoted.append('"');
+                        next = quote + 2;
+                    } else {
+                        next = quote + 1;
+                        break;
+                    }
+                }
+                end = next;
+                while (end < length && line.charAt(end) <= ' ') {
+                    end++;
+                }
+                if (end < length && line.charAt(end) != ',') {
+                    return "field " + (i + 1) + " has text after its closing quote";
+                }
+                fields[i] = quoted.toString();
+            } else {
+                int comma = line.indexOf(',', start);
+                end = comma < 0 ? length : comma;
+                fields[i] = line.substring(start, end).trim();
+            }
+            // Past the comma; past the end of the line if there was none
+            position = end + 1;
+        }
+        if (position <= length) {
+            return "expected " + FIELD_COUNT + " fields, found more";
+        }
+        return null;
+    }
+
+    /**
+     * @return Number of records written by the last import.
+     */
+    public long getImported() {
+        return imported;
+    }
+
+    /**
+     * @return Number of lines rejected by the last import.
+     */
+    public long getRejected() {
+        return rejected;
+    }
+}
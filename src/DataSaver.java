@@ -1,17 +1,12 @@
 import javax.swing.*;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
-import java.util.ArrayList;
-import java.util.InputMismatchException;
-import java.util.List;
-import java.util.Scanner;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * DataSaver.java
@@ -21,61 +16,174 @@ import java.util.regex.Pattern;
  * specified by the user in the 'src' directory of the IntelliJ project.
  * It uses a basic SafeInput utility for validated user input.
  *
+ * Run with --import=FILE (or --import=- for standard input) to load many
+ * records at once instead of typing them (see DataImporter).
+ *
  * @author Gemini
  */
 public class DataSaver {
 
-    // Scanner for console input, used by SafeInput
-    private static final Scanner CONSOLE_SCANNER = new Scanner(System.in);
+    // Console input, used by SafeInput; reads the same as a Scanner, but fast enough for piped scripts
+    private static final InputSource CONSOLE_INPUT = new ReaderInputSource(new InputStreamReader(System.in));
+
+    // Validation rules shared by the prompts and the bulk importer
+    static final String ID_REGEX = "^\\d{6}$"; // Exactly 6 digits, zero-padded (e.g., 000001)
+    static final String EMAIL_REGEX = "^[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,6}$";
+    static final int MIN_YEAR_OF_BIRTH = 1900;
+    static final int MAX_YEAR_OF_BIRTH = 2025; // Adjust range as needed
+
+    private static final String USAGE =
+            "Usage: java DataSaver [FLUSH OPTIONS]      prompt for records one field at a time\n"
+            + "       java DataSaver --import=FILE --output=NAME [--errors=FILE] [FLUSH OPTIONS]\n"
+            + "  --import=FILE      read records (First,Last,ID,Email,Year per line) from FILE, or - for standard input\n"
+            + "  --output=NAME      save the valid records to src/NAME.csv\n"
+            + "  --errors=FILE      write rejected lines with their line number and reason to FILE\n"
+            + "                     (default: src/NAME-errors.txt)\n"
+            + "Records are written to the file as they are entered. FLUSH OPTIONS:\n"
+            + "  --flush-every=N    flush after every N records (default " + RecordWriter.DEFAULT_FLUSH_EVERY_RECORDS
+            + "; 0 = by time only)\n"
+            + "  --flush-ms=T       flush records at most T ms after they were written (default "
+            + RecordWriter.DEFAULT_FLUSH_INTERVAL_MILLIS + "; 0 = off)";
 
     /**
      * Main method to run the Data Saver program.
      *
-     * @param args Command line arguments (not used in this program).
+     * @param args Command line arguments; see USAGE. Without --import, records are entered interactively.
      */
     public static void main(String[] args) {
-        ArrayList<String> csvRecords = new ArrayList<>(); // List to store CSV formatted records
-        boolean doneInputting = false;
+        String source = null;
+        String outputName = null;
+        String errorFile = null;
+        int flushEveryRecords = RecordWriter.DEFAULT_FLUSH_EVERY_RECORDS;
+        long flushIntervalMillis = RecordWriter.DEFAULT_FLUSH_INTERVAL_MILLIS;
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--import=")) {
+                    source = arg.substring("--import=".length());
+                } else if (arg.startsWith("--output=")) {
+                    outputName = arg.substring("--output=".length());
+                } else if (arg.startsWith("--errors=")) {
+                    errorFile = arg.substring("--errors=".length());
+                } else if (arg.startsWith("--flush-every=")) {
+                    flushEveryRecords = Integer.parseInt(arg.substring("--flush-every=".length()));
+                } else if (arg.startsWith("--flush-ms=")) {
+                    flushIntervalMillis = Long.parseLong(arg.substring("--flush-ms=".length()));
+                } else {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+            if (flushEveryRecords < 0 || flushIntervalMillis < 0) {
+                throw new IllegalArgumentException("Flush options must not be negative");
+            }
+            if (source == null && (outputName != null || errorFile != null)) {
+                throw new IllegalArgumentException("--output and --errors need --import");
+            }
+            if (source != null && (source.isEmpty() || outputName == null || outputName.trim().isEmpty())) {
+                throw new IllegalArgumentException("--import and --output are both required");
+            }
+        } catch (IllegalArgumentException e) {
+            // Also covers NumberFormatException
+            System.err.println("Error: " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        if (source != null) {
+            System.exit(importRecords(source, outputName.trim(), errorFile, flushEveryRecords, flushIntervalMillis));
+            return;
+        }
 
         System.out.println("--- Data Collection for CSV File ---");
 
-        // Loop to collect multiple records from the user
-        do {
-            System.out.println("\n--- Enter New Record ---");
-            String firstName = SafeInput.getNonZeroLenString(CONSOLE_SCANNER, "Enter First Name");
-            String lastName = SafeInput.getNonZeroLenString(CONSOLE_SCANNER, "Enter Last Name");
+        // Prompt for file name first: each record is saved as soon as it is entered
+        String fileName = SafeInput.getNonZeroLenString(CONSOLE_INPUT, "Enter the name for the CSV file (e.g., mydata)");
 
-            // ID Number: 6 digits, zero-padded string (e.g., 000001)
-            // Using a regex to ensure exactly 6 digits
-            String idNumber = SafeInput.getRegExString(CONSOLE_SCANNER, "Enter ID Number (6 digits, e.g., 000001)", "^\\d{6}$");
+        try {
+            Path filePath = resolveOutputPath(fileName);
 
-            // Email: Basic email regex validation
-            String email = SafeInput.getRegExString(CONSOLE_SCANNER, "Enter Email (e.g., user@example.com)", "^[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,6}$");
+            // Use try-with-resources to ensure the RecordWriter is automatically closed.
+            // The file is created, or truncated to 0 bytes if it exists.
+            try (RecordWriter writer = new RecordWriter(filePath, flushEveryRecords, flushIntervalMillis)) {
+                CsvEncoder csvRecord = new CsvEncoder();
+                boolean doneInputting = false;
 
-            // Year of Birth: 4-digit integer, within a reasonable range
-            int yearOfBirth = SafeInput.getRangedInt(CONSOLE_SCANNER, "Enter Year of Birth (e.g., 1978)", 1900, 2025); // Adjust range as needed
+                // Loop to collect multiple records from the user
+                do {
+                    System.out.println("\n--- Enter New Record ---");
+                    String firstName = SafeInput.getNonZeroLenString(CONSOLE_INPUT, "Enter First Name");
+                    String lastName = SafeInput.getNonZeroLenString(CONSOLE_INPUT, "Enter Last Name");
 
-            // Format data into CSV record
-            String csvRecord = String.format("%s,%s,%s,%s,%d",
-                    firstName, lastName, idNumber, email, yearOfBirth);
+                    // ID Number: 6 digits, zero-padded string (e.g., 000001)
+                    // Using a regex to ensure exactly 6 digits
+                    String idNumber = SafeInput.getRegExString(CONSOLE_INPUT, "Enter ID Number (6 digits, e.g., 000001)", ID_REGEX);
 
-            csvRecords.add(csvRecord); // Add the formatted record to the list
-            System.out.println("Record added: " + csvRecord);
+                    // Email: Basic email regex validation
+                    String email = SafeInput.getRegExString(CONSOLE_INPUT, "Enter Email (e.g., user@example.com)", EMAIL_REGEX);
 
-            doneInputting = !SafeInput.getYNConfirm(CONSOLE_SCANNER, "Do you want to add another record? (Y/N)");
+                    // Year of Birth: 4-digit integer, within a reasonable range
+                    int yearOfBirth = SafeInput.getRangedInt(CONSOLE_INPUT, "Enter Year of Birth (e.g., 1978)",
+                            MIN_YEAR_OF_BIRTH, MAX_YEAR_OF_BIRTH);
 
-        } while (!doneInputting);
+                    // Format data into CSV record and write it through to the file
+                    encodeRecord(csvRecord, firstName, lastName, idNumber, email, yearOfBirth);
+                    writer.write(csvRecord);
+                    System.out.println("Record added: " + csvRecord);
 
-        System.out.println("\n--- Data Collection Complete ---");
+                    doneInputting = !SafeInput.getYNConfirm(CONSOLE_INPUT, "Do you want to add another record? (Y/N)");
 
-        if (csvRecords.isEmpty()) {
-            System.out.println("No records were entered. Exiting without saving a file.");
-            CONSOLE_SCANNER.close();
-            return;
+                } while (!doneInputting);
+
+                System.out.println("\n--- Data Collection Complete ---");
+                System.out.println(writer.getWritten() + " records successfully saved to: " + filePath.toAbsolutePath());
+
+            } catch (IOException e) {
+                System.err.println("An I/O error occurred while writing the file: " + e.getMessage());
+                e.printStackTrace();
+            }
+
+        } catch (SecurityException e) {
+            System.err.println("Security Error: Permission denied to create directory or write file. " + e.getMessage());
+            e.printStackTrace();
+        } catch (Exception e) {
+            System.err.println("An unexpected error occurred: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            CONSOLE_INPUT.close(); // Close the input when done with all input
         }
+    }
+
+    /**
+     * Encodes one record as a CSV line (without the line break). Names that contain
+     * a comma or a quote are quoted, so they cannot shift the other fields.
+     *
+     * @param encoder     The encoder to reuse; reset first.
+     * @param firstName   First name.
+     * @param lastName    Last name.
+     * @param idNumber    Six-digit ID.
+     * @param email       Email address.
+     * @param yearOfBirth Year of birth.
+     * @return The encoder, holding the CSV line.
+     */
+    static CsvEncoder encodeRecord(CsvEncoder encoder, String firstName, String lastName, String idNumber,
+                                   String email, int yearOfBirth) {
+        return encoder.reset()
+                .field(firstName)
+                .field(lastName)
+                .field(idNumber)
+                .field(email)
+                .field(yearOfBirth);
+    }
 
-        // Prompt for file name
-        String fileName = SafeInput.getNonZeroLenString(CONSOLE_SCANNER, "Enter the name for the CSV file (e.g., mydata)");
+    /**
+     * Determines where a CSV file is saved: the 'src' directory of the project,
+     * which is created if it does not exist yet.
+     *
+     * @param fileName Name of the file; ".csv" is added if it is missing.
+     * @return The path of the file.
+     * @throws IOException If the 'src' directory cannot be created.
+     */
+    static Path resolveOutputPath(String fileName) throws IOException {
         if (!fileName.toLowerCase().endsWith(".csv")) {
             fileName += ".csv"; // Ensure .csv extension
         }
@@ -83,44 +191,60 @@ public class DataSaver {
         // Determine the file path in the 'src' directory
         Path projectRoot = Paths.get(System.getProperty("user.dir"));
         Path srcDirectory = projectRoot.resolve("src");
-        Path filePath = srcDirectory.resolve(fileName);
 
+        // Ensure the 'src' directory exists. If not, create it.
+        // This is important if the program is run from a context where 'src' isn't guaranteed.
+        if (!Files.exists(srcDirectory)) {
+            Files.createDirectories(srcDirectory);
+            System.out.println("Created directory: " + srcDirectory.toAbsolutePath());
+        }
+        return srcDirectory.resolve(fileName);
+    }
+
+    /**
+     * Runs a bulk import.
+     *
+     * @param source              The file to read, or "-" for standard input.
+     * @param outputName          Name of the CSV file to write in 'src'.
+     * @param errorFile           The file for rejected lines, or null for the default next to the CSV file.
+     * @param flushEveryRecords   Flush after this many records; 0 to flush by time only.
+     * @param flushIntervalMillis Longest time a record stays unflushed; 0 for no timer.
+     * @return The exit status: 0 if every record was imported, 1 if some were rejected
+     *         or the import failed.
+     */
+    private static int importRecords(String source, String outputName, String errorFile,
+                                     int flushEveryRecords, long flushIntervalMillis) {
         try {
-            // Ensure the 'src' directory exists. If not, create it.
-            // This is important if the program is run from a context where 'src' isn't guaranteed.
-            if (!Files.exists(srcDirectory)) {
-                Files.createDirectories(srcDirectory);
-                System.out.println("Created directory: " + srcDirectory.toAbsolutePath());
-            }
+            Path outputPath = resolveOutputPath(outputName);
+            String baseName = outputPath.getFileName().toString();
+            Path errorPath = errorFile != null
+                    ? Paths.get(errorFile)
+                    : outputPath.resolveSibling(baseName.substring(0, baseName.length() - ".csv".length()) + "-errors.txt");
 
-            // Use try-with-resources to ensure the BufferedWriter is automatically closed
-            // StandardOpenOption.CREATE: Creates the file if it doesn't exist.
-            // StandardOpenOption.TRUNCATE_EXISTING: If file exists, truncate it to 0 bytes.
-            // (Use StandardOpenOption.APPEND if you wanted to add to an existing file)
-            try (BufferedWriter writer = Files.newBufferedWriter(
-                    filePath,
-                    StandardOpenOption.CREATE,
-                    StandardOpenOption.TRUNCATE_EXISTING)) {
-
-                for (String record : csvRecords) {
-                    writer.write(record);
-                    writer.newLine(); // Add a new line after each record
+            DataImporter importer = new DataImporter();
+            long startNanos = System.nanoTime();
+            try (RecordWriter writer = new RecordWriter(outputPath, flushEveryRecords, flushIntervalMillis)) {
+                if (source.equals("-")) {
+                    importer.importRecords(System.in, writer, errorPath);
+                } else {
+                    try (InputStream in = Files.newInputStream(Paths.get(source))) {
+                        importer.importRecords(in, writer, errorPath);
+                    }
                 }
-                System.out.println("Data successfully saved to: " + filePath.toAbsolutePath());
-
-            } catch (IOException e) {
-                System.err.println("An I/O error occurred while writing the file: " + e.getMessage());
-                e.printStackTrace();
             }
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
 
-        } catch (SecurityException e) {
-            System.err.println("Security Error: Permission denied to create directory or write file. " + e.getMessage());
-            e.printStackTrace();
-        } catch (Exception e) {
-            System.err.println("An unexpected error occurred: " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            CONSOLE_SCANNER.close(); // Close the scanner when done with all input
+            System.out.printf("Imported %d records to %s in %.3f s (%.0f records/s)%n",
+                    importer.getImported(), outputPath.toAbsolutePath(), seconds,
+                    (importer.getImported() + importer.getRejected()) / Math.max(seconds, 1e-9));
+            if (importer.getRejected() > 0) {
+                System.out.println("Rejected " + importer.getRejected() + " records; see " + errorPath.toAbsolutePath());
+                return 1;
+            }
+            return 0;
+        } catch (IOException | SecurityException | InvalidPathException e) {
+            System.err.println("An I/O error occurred during the import: " + e.getMessage());
+            return 1;
         }
     }
 
@@ -133,11 +257,11 @@ public class DataSaver {
         /**
          * Gets a non-zero length string from the user.
          *
-         * @param pipe   Scanner object to read input.
+         * @param pipe   InputSource to read input from.
          * @param prompt Message to display to the user.
          * @return A non-empty string.
          */
-        public static String getNonZeroLenString(Scanner pipe, String prompt) {
+        public static String getNonZeroLenString(InputSource pipe, String prompt) {
             String retString = "";
             do {
                 System.out.print("\n" + prompt + ": ");
@@ -149,13 +273,13 @@ public class DataSaver {
         /**
          * Gets an integer within a specified range from the user.
          *
-         * @param pipe   Scanner object to read input.
+         * @param pipe   InputSource to read input from.
          * @param prompt Message to display to the user.
          * @param low    The lower bound of the acceptable range (inclusive).
          * @param high   The upper bound of the acceptable range (inclusive).
          * @return An integer within the specified range.
          */
-        public static int getRangedInt(Scanner pipe, String prompt, int low, int high) {
+        public static int getRangedInt(InputSource pipe, String prompt, int low, int high) {
             int retVal = low - 1; // Initialize outside range to force loop
             String trash;
             boolean done = false;
@@ -179,25 +303,24 @@ public class DataSaver {
         }
 
         /**
-         * Gets a string that matches a specified regular expression.
+         * Gets a string that matches a specified regular expression. The expression
+         * is compiled once and cached (see FieldValidators).
          *
-         * @param pipe   Scanner object to read input.
+         * @param pipe   InputSource to read input from.
          * @param prompt Message to display to the user.
          * @param regEx  The regular expression to match against.
          * @return A string that matches the regular expression.
          */
-        public static String getRegExString(Scanner pipe, String prompt, String regEx) {
+        public static String getRegExString(InputSource pipe, String prompt, String regEx) {
             String retString;
             boolean done = false;
-            Pattern pattern = Pattern.compile(regEx);
-            Matcher matcher;
+            FieldValidator validator = FieldValidators.forRegex(regEx);
 
             do {
                 System.out.print("\n" + prompt + ": ");
                 retString = pipe.nextLine().trim();
-                matcher = pattern.matcher(retString);
 
-                if (matcher.matches()) {
+                if (validator.isValid(retString)) {
                     done = true;
                 } else {
                     System.out.println("Invalid input. Does not match the required format (" + regEx + "). Please try again.");
@@ -209,11 +332,11 @@ public class DataSaver {
         /**
          * Gets a Y/N (Yes/No) confirmation from the user.
          *
-         * @param pipe   Scanner object to read input.
+         * @param pipe   InputSource to read input from.
          * @param prompt Message to display to the user.
          * @return True if 'Y' or 'y' is entered, false if 'N' or 'n' is entered.
          */
-        public static boolean getYNConfirm(Scanner pipe, String prompt) {
+        public static boolean getYNConfirm(InputSource pipe, String prompt) {
             String response;
             boolean done = false;
             boolean confirmed = false;
@@ -0,0 +1,364 @@
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.CharacterCodingException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * DirectoryInspector.java
+ *
+ * Counts lines, words and characters of every file below one or more
+ * directory trees, like `wc` run over a tree. Files are handed to a fixed-size
+ * worker pool as soon as the walk finds them, so walking and counting overlap.
+ * One row is printed per file, sorted by path so the output is the same on
+ * every run, followed by a grand total.
+ *
+ * Include and exclude globs are matched against both the file name and the
+ * path relative to the walked directory, so "*.log" and "build/**" both work.
+ * An excluded directory is not descended into at all.
+ *
+ * For trees of many small files, where time goes into open/read latency
+ * rather than counting, each file can instead get its own virtual thread so
+ * thousands of reads are in flight at once. Virtual threads need Java 21;
+ * on older runtimes a cached pool of platform threads is used instead. Either
+ * way a semaphore caps how many files are open at the same time.
+ *
+ * With content hashing on, every file is also fingerprinted (see
+ * ContentHasher) while it is counted, and files with the same size and
+ * fingerprint are listed as duplicates after the table.
+ *
+ * With a ReportWriter, each file's record is written by its worker as soon as
+ * the file is counted, in completion order, instead of the table.
+ */
+public class DirectoryInspector {
+
+    private final List<PathMatcher> includes = new ArrayList<>();
+    private final List<PathMatcher> excludes = new ArrayList<>();
+    private final int threads;
+    private final boolean virtualThreads;
+    private final ResultCache cache;
+    private final TextInspector inspector;
+    private final boolean hashContent;
+    private final boolean sha256;
+    private final ReportWriter report;
+
+    // Fingerprint of every file counted so far, filled in by the workers when hashing
+    private final Map<Path, String> fingerprints = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an inspector.
+     *
+     * @param includeGlobs   Only files matching one of these are counted; empty means all files.
+     * @param excludeGlobs   Files and directories matching one of these are skipped.
+     * @param threads        Maximum number of files counted at the same time.
+     * @param virtualThreads Whether every file gets its own (virtual) thread instead of a fixed pool.
+     * @param cache          Cache of earlier results, or null to count every file.
+     * @param inspector      The counting engine.
+     * @param hashContent    Whether to fingerprint every file and report duplicates.
+     * @param sha256         Whether the fingerprint includes a SHA-256 digest as well as the CRC32C.
+     * @param report         Writer for machine-readable records, or null to print the table.
+     */
+    public DirectoryInspector(List<String> includeGlobs, List<String> excludeGlobs, int threads,
+                              boolean virtualThreads, ResultCache cache, TextInspector inspector,
+                              boolean hashContent, boolean sha256, ReportWriter report) {
+        for (String glob : includeGlobs) {
+            includes.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+        }
+        for (String glob : excludeGlobs) {
+            excludes.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+        }
+        this.threads = threads;
+        this.virtualThreads = virtualThreads;
+        this.cache = cache;
+        this.inspector = inspector;
+        this.hashContent = hashContent;
+        this.sha256 = sha256;
+        this.report = report;
+    }
+
+    /**
+     * Counts every file below the given roots and prints the table.
+     * A root that is a file is counted as is, without applying the filters.
+     *
+     * @param roots Directories to walk and files to count.
+     * @return True if every file was counted successfully.
+     */
+    public boolean inspect(List<Path> roots) {
+        // Sorted by path, so rows come out in a deterministic order however the workers finish
+        Map<Path, Future<InspectionResult>> results = new TreeMap<>();
+        ExecutorService pool = virtualThreads ? newThreadPerTaskExecutor() : Executors.newFixedThreadPool(threads);
+        // Also stops the walk from queueing up more work than the workers can take
+        Semaphore inFlight = new Semaphore(threads);
+        long startNanos = System.nanoTime();
+        boolean allOk = true;
+
+        try {
+            for (Path root : roots) {
+                if (Files.isDirectory(root)) {
+                    try {
+                        walk(root, pool, inFlight, results);
+                    } catch (IOException e) {
+                        FileInspector.printError("Error: Unable to walk " + root + ": " + e.getMessage());
+                        allOk = false;
+                    }
+                } else {
+                    results.put(root, submit(pool, inFlight, () -> countFile(root)));
+                }
+            }
+
+            long totalLines = 0;
+            long totalWords = 0;
+            long totalChars = 0;
+
+            // Files by size and fingerprint, in path order within each group
+            Map<String, List<Path>> sameContent = new LinkedHashMap<>();
+
+            for (Map.Entry<Path, Future<InspectionResult>> entry : results.entrySet()) {
+                try {
+                    InspectionResult result = entry.getValue().get();
+                    if (report == null) {
+                        printRow(result.getLineCount(), result.getWordCount(), result.getCharCount(),
+                                entry.getKey().toString());
+                    }
+                    totalLines += result.getLineCount();
+                    totalWords += result.getWordCount();
+                    totalChars += result.getCharCount();
+                    if (hashContent) {
+                        String key = result.getByteCount() + " bytes, " + fingerprints.get(entry.getKey());
+                        sameContent.computeIfAbsent(key, k -> new ArrayList<>()).add(entry.getKey());
+                    }
+                } catch (ExecutionException e) {
+                    FileInspector.printError("Error: " + entry.getKey() + ": " + describe(e.getCause()));
+                    allOk = false;
+                }
+            }
+            if (report == null) {
+                printRow(totalLines, totalWords, totalChars, "total");
+            }
+            if (hashContent && report == null) {
+                printDuplicates(sameContent);
+            }
+
+            // Throughput goes to the error stream so the table itself stays the same on every run
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            System.out.flush();
+            System.err.printf("%d files in %.3f s (%.0f files/s)%n",
+                    results.size(), seconds, results.size() / Math.max(seconds, 1e-9));
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            FileInspector.printError("Error: Interrupted while waiting for results");
+            allOk = false;
+        } finally {
+            pool.shutdownNow();
+        }
+        return allOk;
+    }
+
+    /**
+     * Walks one directory tree and submits every selected file to the pool.
+     *
+     * @param root     The directory to walk.
+     * @param pool     Pool that counts the files.
+     * @param inFlight Permits for the files being counted at the moment.
+     * @param results  Where the pending results are collected.
+     * @throws IOException If the walk itself fails.
+     */
+    private void walk(Path root, ExecutorService pool, Semaphore inFlight,
+                      Map<Path, Future<InspectionResult>> results) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(root) && matchesAny(excludes, root, dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()
+                        && (includes.isEmpty() || matchesAny(includes, root, file))
+                        && !matchesAny(excludes, root, file)) {
+                    results.put(file, submit(pool, inFlight, () -> countFile(file)));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // Unreadable entries become error rows instead of aborting the walk
+                results.put(file, pool.submit(() -> {
+                    throw e;
+                }));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Submits a task once a permit is free; the permit is returned when the task ends.
+     *
+     * @param pool     Pool that runs the task.
+     * @param inFlight Permits for the tasks running at the moment.
+     * @param task     The counting task.
+     * @return The pending result.
+     */
+    private static Future<InspectionResult> submit(ExecutorService pool, Semaphore inFlight,
+                                                   Callable<InspectionResult> task) {
+        inFlight.acquireUninterruptibly();
+        try {
+            return pool.submit(() -> {
+                try {
+                    return task.call();
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread per task (Java 21 and later).
+     * The project compiles for Java 11, so the factory method is looked up at run time.
+     * Older runtimes get a pool that creates platform threads as needed.
+     *
+     * @return The executor.
+     */
+    private static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.out.flush();
+            System.err.println("Note: Virtual threads need Java 21 or later; using platform threads instead.");
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Counts one file and writes its record if records are wanted.
+     *
+     * @param file The file to count.
+     * @return The file's counts.
+     * @throws IOException If the file cannot be read or is not valid UTF-8.
+     */
+    private InspectionResult countFile(Path file) throws IOException {
+        long startNanos = System.nanoTime();
+        InspectionResult result = countOrLookUp(file);
+        if (report != null) {
+            report.record(file, result, System.nanoTime() - startNanos);
+        }
+        return result;
+    }
+
+    /**
+     * Counts one file, or takes its totals from the cache.
+     *
+     * @param file The file to count.
+     * @return The file's counts.
+     * @throws IOException If the file cannot be read or is not valid UTF-8.
+     */
+    private InspectionResult countOrLookUp(Path file) throws IOException {
+        if (hashContent) {
+            // The cache holds no fingerprints, so hashed files are always read
+            ContentHasher hasher = new ContentHasher(sha256);
+            InspectionResult result = inspector.inspect(file, hasher);
+            fingerprints.put(file, hasher.getFingerprint());
+            return result;
+        }
+        if (cache != null) {
+            return cache.inspect(file, inspector);
+        }
+        return inspector.inspect(file);
+    }
+
+    /**
+     * Checks a path against globs, by its name and by its path relative to the root.
+     *
+     * @param matchers The globs.
+     * @param root     The directory being walked.
+     * @param path     A path below the root.
+     * @return True if any glob matches.
+     */
+    private static boolean matchesAny(List<PathMatcher> matchers, Path root, Path path) {
+        Path relative = root.relativize(path);
+        Path name = path.getFileName();
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(relative) || (name != null && matcher.matches(name))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Prints one row of the table.
+     *
+     * @param lines Number of lines.
+     * @param words Number of words.
+     * @param chars Number of characters.
+     * @param label The file path, or "total".
+     */
+    private static void printRow(long lines, long words, long chars, String label) {
+        System.out.printf("%12d %12d %14d %s%n", lines, words, chars, label);
+    }
+
+    /**
+     * Prints every group of two or more files with the same size and fingerprint.
+     *
+     * @param sameContent Files grouped by size and fingerprint.
+     */
+    private static void printDuplicates(Map<String, List<Path>> sameContent) {
+        int groups = 0;
+        for (Map.Entry<String, List<Path>> group : sameContent.entrySet()) {
+            if (group.getValue().size() < 2) {
+                continue;
+            }
+            if (groups++ == 0) {
+                System.out.println("\n--- Duplicate Files ---");
+            }
+            System.out.println(group.getValue().size() + " files, " + group.getKey() + ":");
+            for (Path file : group.getValue()) {
+                System.out.println("  " + file);
+            }
+        }
+        if (groups == 0) {
+            System.out.println("\nNo duplicate files.");
+        }
+    }
+
+    /**
+     * Turns a counting failure into a short message.
+     *
+     * @param cause The exception thrown while counting.
+     * @return The message to show.
+     */
+    private static String describe(Throwable cause) {
+        if (cause instanceof CharacterCodingException) {
+            return "not valid UTF-8";
+        }
+        return cause.toString();
+    }
+}
@@ -0,0 +1,15 @@
+/**
+ * FieldValidator.java
+ *
+ * Checks whether one entered field has the required format. Implementations
+ * must be safe to call from several threads; see FieldValidators for the
+ * registry that hands them out.
+ */
+public interface FieldValidator {
+
+    /**
+     * @param input The field, already trimmed.
+     * @return Whether the whole field has the required format.
+     */
+    boolean isValid(CharSequence input);
+}
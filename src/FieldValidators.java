@@ -0,0 +1,109 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * FieldValidators.java
+ *
+ * A registry of field validators keyed by regular expression, so each
+ * expression is compiled once however many fields are checked against it.
+ * The two fixed formats DataSaver checks on every record, the six-digit ID
+ * and the email address, are registered under their expressions with
+ * hand-written validators: they accept exactly the same inputs as the
+ * expressions but scan each character once and allocate nothing.
+ */
+public final class FieldValidators {
+
+    /** Accepts exactly what DataSaver.ID_REGEX, "^\\d{6}$", matches: six ASCII digits. */
+    public static final FieldValidator SIX_DIGIT_ID = FieldValidators::isSixDigitId;
+
+    /** Accepts exactly what DataSaver.EMAIL_REGEX matches. */
+    public static final FieldValidator EMAIL = FieldValidators::isEmail;
+
+    private static final ConcurrentHashMap<String, FieldValidator> REGISTRY = new ConcurrentHashMap<>();
+
+    static {
+        REGISTRY.put(DataSaver.ID_REGEX, SIX_DIGIT_ID);
+        REGISTRY.put(DataSaver.EMAIL_REGEX, EMAIL);
+    }
+
+    private FieldValidators() {
+    }
+
+    /**
+     * Gets the validator for a regular expression, compiling it on first use.
+     *
+     * @param regEx The expression the whole field must match.
+     * @return The validator; the same instance on every call with the same expression.
+     * @throws java.util.regex.PatternSyntaxException If the expression is invalid.
+     */
+    public static FieldValidator forRegex(String regEx) {
+        FieldValidator validator = REGISTRY.get(regEx);
+        if (validator == null) {
+            // Compiled outside computeIfAbsent so an invalid expression is not cached
+            Pattern pattern = Pattern.compile(regEx);
+            validator = REGISTRY.computeIfAbsent(regEx, key -> input -> pattern.matcher(input).matches());
+        }
+        return validator;
+    }
+
+    private static boolean isSixDigitId(CharSequence input) {
+        if (input.length() != 6) {
+            return false;
+        }
+        for (int i = 0; i < 6; i++) {
+            if (!isDigit(input.charAt(i))) {
+                return false; // \d is ASCII-only without UNICODE_CHARACTER_CLASS
+            }
+        }
+        return true;
+    }
+
+    /**
+     * "^[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,6}$" without backtracking: the
+     * domain set contains '.' and every letter, so the expression matches exactly when
+     * everything after the single '@' is in the domain set and its last '.' is preceded
+     * by at least one character and followed by two to six letters.
+     */
+    private static boolean isEmail(CharSequence input) {
+        int length = input.length();
+        int at = 0;
+        while (at < length && isLocalPartChar(input.charAt(at))) {
+            at++;
+        }
+        if (at == 0 || at == length || input.charAt(at) != '@') {
+            return false;
+        }
+
+        int lastDot = -1;
+        for (int i = at + 1; i < length; i++) {
+            char c = input.charAt(i);
+            if (c == '.') {
+                lastDot = i;
+            } else if (!isLetter(c) && !isDigit(c) && c != '-') {
+                return false;
+            }
+        }
+        int tldLength = length - lastDot - 1;
+        if (lastDot < at + 2 || tldLength < 2 || tldLength > 6) {
+            return false;
+        }
+        for (int i = lastDot + 1; i < length; i++) {
+            if (!isLetter(input.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLocalPartChar(char c) {
+        return isLetter(c) || isDigit(c) || c == '.' || c == '_' || c == '%' || c == '+' || c == '-';
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
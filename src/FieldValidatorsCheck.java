@@ -0,0 +1,140 @@
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * FieldValidatorsCheck.java
+ *
+ * Checks that the hand-written validators of FieldValidators accept exactly
+ * what the regular expressions they replace match: SIX_DIGIT_ID against
+ * DataSaver.ID_REGEX and EMAIL against DataSaver.EMAIL_REGEX. Both are run
+ * on fixed edge cases and on generated inputs: random strings over an
+ * alphabet of the characters the expressions care about (plus whitespace,
+ * non-ASCII digits and letters), IDs with one character replaced, and
+ * addresses assembled from local part, '@', domain, '.' and suffix pieces so
+ * that a good share of them are valid. Any disagreement is printed and the
+ * program exits with status 1.
+ *
+ * Run with: java FieldValidatorsCheck [ROUNDS]   (default 1000000)
+ */
+public class FieldValidatorsCheck {
+
+    // Characters the expressions treat specially, and some they must reject
+    private static final String ALPHABET = "aZz09.@_%+-x\u0663\uff21 \n\t,";
+
+    // Pieces of generated addresses
+    private static final String[] PIECES = {
+            "a", "Z", "9", ".", "-", "_", "%", "+", "@", "..", "x.y", "\u0663", " ",
+            "co", "abcdef", "abcdefg", "q1"
+    };
+
+    private static final String[] EDGE_CASES = {
+            "", "a@b.co", "ann@x.com", "a.b@c.d.efghij", "a@.co", "a@b.c", "a@b.abcdefg", "@b.co",
+            "a@@b.co", "a@b.co\n", "a@b-.c0m", "a@b..co", "a@-.co", "a@b.co.", "a%+@b.co", "a@b.co ",
+            "000001", "12345", "1234567", "12345\u0663", "\uff10\uff10\uff10\uff10\uff10\uff10", "00000a", "000001\n"
+    };
+
+    private static final Pattern ID_PATTERN = Pattern.compile(DataSaver.ID_REGEX);
+    private static final Pattern EMAIL_PATTERN = Pattern.compile(DataSaver.EMAIL_REGEX);
+
+    private static long mismatches = 0;
+    private static long checked = 0;
+    private static long validIds = 0;
+    private static long validEmails = 0;
+
+    /**
+     * Main method to run the check.
+     *
+     * @param args Number of generated rounds.
+     */
+    public static void main(String[] args) {
+        int rounds = args.length == 0 ? 1_000_000 : Integer.parseInt(args[0]);
+        Random random = new Random(42);
+
+        for (String input : EDGE_CASES) {
+            check(input);
+        }
+        for (int round = 0; round < rounds; round++) {
+            check(randomString(random));
+            check(randomId(random));
+            check(randomEmail(random));
+        }
+
+        System.out.printf("%d inputs checked, %d valid IDs, %d valid emails, %d mismatches%n",
+                checked, validIds, validEmails, mismatches);
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs both validators on one input and reports any disagreement with their expressions.
+     */
+    private static void check(String input) {
+        checked++;
+        boolean idExpected = ID_PATTERN.matcher(input).matches();
+        boolean emailExpected = EMAIL_PATTERN.matcher(input).matches();
+        if (FieldValidators.SIX_DIGIT_ID.isValid(input) != idExpected) {
+            mismatch("SIX_DIGIT_ID", input, idExpected);
+        }
+        if (FieldValidators.EMAIL.isValid(input) != emailExpected) {
+            mismatch("EMAIL", input, emailExpected);
+        }
+        validIds += idExpected ? 1 : 0;
+        validEmails += emailExpected ? 1 : 0;
+    }
+
+    private static void mismatch(String validator, String input, boolean expected) {
+        mismatches++;
+        StringBuilder escaped = new StringBuilder();
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c < 0x20 || c > 0x7E) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        System.out.println("MISMATCH " + validator + " on \"" + escaped + "\": expected " + expected);
+    }
+
+    private static String randomString(Random random) {
+        int length = random.nextInt(14);
+        StringBuilder input = new StringBuilder(random.nextBoolean() ? "a" : "");
+        for (int i = 0; i < length; i++) {
+            input.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return input.toString();
+    }
+
+    private static String randomId(Random random) {
+        String id = String.format("%06d", random.nextInt(1_000_000));
+        if (random.nextInt(4) == 0) {
+            // Replace, insert or drop one character
+            int at = random.nextInt(6);
+            id = id.substring(0, at) + ALPHABET.charAt(random.nextInt(ALPHABET.length()))
+                    + id.substring(at + random.nextInt(2));
+        }
+        return id;
+    }
+
+    private static String randomEmail(Random random) {
+        StringBuilder input = new StringBuilder();
+        appendPieces(input, random, 3);
+        if (random.nextInt(8) != 0) {
+            input.append('@');
+        }
+        appendPieces(input, random, 3);
+        if (random.nextInt(8) != 0) {
+            input.append('.');
+        }
+        appendPieces(input, random, 2);
+        return input.toString();
+    }
+
+    private static void appendPieces(StringBuilder input, Random random, int maxPieces) {
+        int pieces = 1 + random.nextInt(maxPieces);
+        for (int i = 0; i < pieces; i++) {
+            input.append(PIECES[random.nextInt(PIECES.length)]);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * FileInspectedEvent.java
+ *
+ * Flight Recorder event for one file inspected by TextInspector. The event's
+ * duration is the time the inspection took; the fields break it down. JFR
+ * only records it while a recording with this event enabled is running, e.g.
+ * java -XX:StartFlightRecording:filename=run.jfr FileInspector ...
+ */
+@Name("FileInspector.FileInspected")
+@Label("File Inspected")
+@Category("FileInspector")
+@Description("A file was counted")
+class FileInspectedEvent extends jdk.jfr.Event {
+
+    @Label("Path")
+    String path;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Lines")
+    long lines;
+
+    @Label("Words")
+    long words;
+
+    @Label("Characters")
+    long chars;
+
+    @Label("Blocked in Read")
+    @Timespan
+    long readNanos;
+
+    @Label("Counting")
+    @Timespan
+    long countNanos;
+}
@@ -1,21 +1,68 @@
 import javax.swing.*;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.file.FileSystems;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
-import java.util.Arrays; // Needed for Arrays.stream
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * FileInspector.java
  *
  * This program allows a user to select a text file using a JFileChooser,
- * reads the file line by line, echoes its content to the console,
+ * reads the file in one pass, echoes its content to the console,
  * and then generates a summary report including the file name,
  * total number of lines, words, and characters.
  *
+ * When one or more paths are given on the command line the program runs
+ * in batch mode instead: every argument may be a file, a directory (its
+ * regular files are inspected) or a glob such as "logs/*.txt", and the
+ * same summary report is printed for each matching file. Batch mode never
+ * touches javax.swing, so it also works on headless machines.
+ *
+ * The counting itself is done by TextInspector, which reads or memory-maps
+ * regular files and counts directly on their UTF-8 bytes; a BufferedReader is
+ * only used to echo pipes and to report files that are not valid UTF-8.
+ * With --parallel each file is split into line-aligned chunks that are counted
+ * on a ForkJoinPool, giving exactly the same totals as a sequential pass.
+ * Echoed content is copied straight from the file to the console channel;
+ * --no-echo skips it and prints only the reports.
+ *
+ * With --recursive the program instead walks directory trees on a pool of
+ * worker threads and prints a `wc`-style table (see DirectoryInspector).
+ * --cache=FILE keeps the counts of earlier runs (see ResultCache), and
+ * --follow keeps counting a log file as it grows (see LogFollower).
+ * gzip files and zip archives are decompressed on the fly and reported per
+ * entry (see ArchiveInspector). --top lists the most frequent words of each
+ * file, counted in the same pass (see WordFrequencyTable), and --distinct
+ * estimates how many different words they contain (see DistinctWordEstimator).
+ * --index writes a sidecar line index, which --lines uses to print any range
+ * of lines without reading the file up to it (see LineIndex). --grep counts
+ * any number of literal patterns in the same pass (see PatternSearch), and
+ * --hash fingerprints the content to find duplicates (see ContentHasher).
+ * --format=jsonl and --format=csv stream one record per file for other
+ * programs to read (see ReportWriter). --stats shows where the time went
+ * (see InspectionMetrics); the same figures are recorded as Flight Recorder
+ * events (see FileInspectedEvent).
+ *
  * It utilizes Java NIO for file operations and try-with-resources
  * for robust resource management.
  *
@@ -23,20 +70,182 @@ import java.util.Arrays; // Needed for Arrays.stream
  */
 public class FileInspector {
 
+    private static final String USAGE =
+            "Usage: java FileInspector [OPTIONS] [FILE | DIRECTORY | GLOB]...\n"
+            + "  With no paths a file chooser is shown.\n"
+            + "  gzip and zip files are recognised by their content and each entry is counted.\n"
+            + "  --no-echo             print only the summary report, not the file content\n"
+            + "  --parallel[=THREADS]  count each file in chunks on a fork-join pool\n"
+            + "  --recursive           walk directories and print one line/word/char row per file plus a total\n"
+            + "  --include=GLOB        with --recursive, only count files matching GLOB (repeatable)\n"
+            + "  --exclude=GLOB        with --recursive, skip files and directories matching GLOB (repeatable)\n"
+            + "  --threads=N           with --recursive, count N files at a time (default: number of CPUs)\n"
+            + "  --virtual-threads     with --recursive, give each file its own virtual thread;\n"
+            + "                        --threads then caps the files in flight (default: 1024)\n"
+            + "  --follow              keep counting one growing file and print running totals\n"
+            + "                        (restarts when the file is truncated or rotated)\n"
+            + "  --follow-interval=MS  with --follow, check the file at least this often (default: 1000)\n"
+            + "  --cache=FILE          remember counts by path, size and modification time, so\n"
+            + "                        unchanged files are not read again (recursive or --no-echo runs)\n"
+            + "  --cache-max=N         keep at most N cache entries, dropping the least recently used\n"
+            + "  --cache-verify        also compare a CRC32C of the content before using a cache entry\n"
+            + "  --top[=K]             list the K most frequent words of each file (default: 10)\n"
+            + "  --top-distinct=N      count up to N distinct words exactly; beyond that the counts\n"
+            + "                        are estimates with an error bound (default: 1000000)\n"
+            + "  --distinct            estimate the number of distinct words per file and for all\n"
+            + "                        files together (HyperLogLog, about 1% error)\n"
+            + "  --index[=K]           write FILE.lidx next to each file, holding the start of every\n"
+            + "                        K-th line (default: 1024)\n"
+            + "  --lines=N[-M]         print lines N to M of each file through its line index,\n"
+            + "                        building the index first if it is missing or stale\n"
+            + "  --grep=TEXT           count the occurrences of TEXT in each file in the same pass (repeatable)\n"
+            + "  --grep-file=FILE      read more patterns from FILE, one per line\n"
+            + "  --grep-lines=N        list the first N lines each pattern occurs on (default: 5)\n"
+            + "  --hash                print a CRC32C of each file's content; with --recursive,\n"
+            + "                        list files with the same size and CRC32C as duplicates\n"
+            + "  --sha256              like --hash, adding a SHA-256 digest to the fingerprint\n"
+            + "  --format=FORMAT       text (default), jsonl or csv: with jsonl or csv one record\n"
+            + "                        per file (path, bytes, lines, words, chars, elapsed_nanos,\n"
+            + "                        mb_per_s) is written as soon as the file is done, and\n"
+            + "                        nothing else goes to standard output\n"
+            + "  --stats               print bytes, MB/s, lines/s and the time spent blocked in reads,\n"
+            + "                        decoding and counting to standard error at the end";
+
+    // Size of the chunks handed to the TextCounter
+    private static final int READ_BUFFER_CHARS = 64 * 1024;
+
+    // Files in flight at once with --virtual-threads unless --threads says otherwise
+    private static final int DEFAULT_VIRTUAL_IN_FLIGHT = 1024;
+
+    // Default number of entries kept in the result cache
+    private static final int DEFAULT_CACHE_ENTRIES = 1_000_000;
+
+    // Words listed by --top without a number, and distinct words counted exactly by default
+    private static final int DEFAULT_TOP_WORDS = 10;
+    private static final int DEFAULT_TOP_DISTINCT = 1_000_000;
+
+    // Line starts between two samples of the line index unless --index says otherwise
+    private static final int DEFAULT_INDEX_INTERVAL = 1024;
+
+    // Most lines read through the index in one go by --lines
+    private static final int MAX_LINES_PER_READ = 64 * 1024;
+
+    // Matching line numbers listed per pattern unless --grep-lines says otherwise
+    private static final int DEFAULT_GREP_LINES = 5;
+
+    // Size of the buffer in front of the console
+    private static final int CONSOLE_BUFFER_BYTES = 256 * 1024;
+
+    // Raw console output used to echo file bytes without going through System.out
+    private static final FileChannel STDOUT_CHANNEL = new FileOutputStream(FileDescriptor.out).getChannel();
+
     /**
      * Main method to run the File Inspector program.
      *
-     * @param args Command line arguments (not used in this program).
+     * @param args Optional files, directories or glob patterns to inspect.
+     *             With no arguments a JFileChooser is shown instead.
      */
     public static void main(String[] args) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        // Replace the console stream, which flushes on every println, with a large buffer
+        // that is only flushed before errors, echoed file content and exit
+        System.setOut(new PrintStream(
+                new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), CONSOLE_BUFFER_BYTES), false));
+
+        if (options.reportFormat != null) {
+            options.report = new ReportWriter(System.out, options.reportFormat);
+        }
+
+        if (options.cacheFile != null) {
+            try {
+                options.cache = ResultCache.load(options.cacheFile, options.cacheMaxEntries, options.cacheVerify);
+            } catch (IOException e) {
+                printError("Warning: Unable to open the cache " + options.cacheFile + ": " + e.getMessage());
+            }
+        }
+
+        if (!options.grepPatterns.isEmpty() || !options.grepFiles.isEmpty()) {
+            List<String> patterns = new ArrayList<>(options.grepPatterns);
+            try {
+                for (Path file : options.grepFiles) {
+                    patterns.addAll(Files.readAllLines(file));
+                }
+            } catch (IOException e) {
+                printError("Error: Unable to read the patterns: " + e.getMessage());
+                System.exit(2);
+                return;
+            }
+            try {
+                options.patternSearch = new PatternSearch(patterns);
+            } catch (IllegalArgumentException e) {
+                printError("Error: " + e.getMessage());
+                System.exit(2);
+                return;
+            }
+        }
+
+        boolean allOk;
+        if (options.linesFrom > 0) {
+            allOk = printLines(options);
+        } else if (options.follow) {
+            allOk = followFile(options);
+        } else if (options.recursive) {
+            allOk = inspectTree(options);
+        } else if (!options.paths.isEmpty()) {
+            // Batch mode: keep the Swing classes unloaded by never calling into the chooser
+            allOk = inspectArguments(options);
+        } else {
+            inspectWithChooser(options);
+            allOk = true;
+        }
+
+        if (options.cache != null) {
+            try {
+                options.cache.save();
+                System.out.flush();
+                System.err.println("Cache: " + options.cache.getHits() + " hits, " + options.cache.getMisses() + " misses");
+            } catch (IOException e) {
+                printError("Warning: Unable to save the cache " + options.cacheFile + ": " + e.getMessage());
+            }
+        }
+
+        System.out.flush();
+        if (options.stats) {
+            System.err.println(options.metrics.summary());
+        }
+        if (!allOk) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Prints an error message, making sure everything printed before it appears first.
+     *
+     * @param message The message for the error stream.
+     */
+    static void printError(String message) {
+        System.out.flush();
+        System.err.println(message);
+    }
+
+    /**
+     * Lets the user pick a single file with a JFileChooser and inspects it.
+     *
+     * @param options Settings from the command line.
+     */
+    private static void inspectWithChooser(Options options) {
         JFileChooser chooser = new JFileChooser();
         Path selectedFilePath = null; // Path object to store the selected file's path
 
-        // Counters for the summary report
-        long lineCount = 0;
-        long wordCount = 0;
-        long charCount = 0;
-
         try {
             // Set the current directory of the JFileChooser to the 'src' folder
             // This assumes a standard IntelliJ project structure where 'src' is
@@ -59,49 +268,13 @@ public class FileInspector {
                 File selectedFile = chooser.getSelectedFile();
                 selectedFilePath = selectedFile.toPath();
 
-                System.out.println("--- Reading File: " + selectedFilePath.getFileName() + " ---");
-
-                // Use try-with-resources to ensure the BufferedReader is automatically closed
-                try (BufferedReader reader = Files.newBufferedReader(selectedFilePath)) {
-                    String line;
-                    // Read the file line by line until the end
-                    while ((line = reader.readLine()) != null) {
-                        // Echo the line to the screen
-                        System.out.println(line);
-
-                        // Increment line count
-                        lineCount++;
-
-                        // Add characters in the line to total character count
-                        // Note: This counts all characters including spaces, punctuation, etc.
-                        charCount += line.length();
-
-                        // Count words in the line
-                        // Trim the line to handle leading/trailing spaces
-                        // Split by one or more whitespace characters (\\s+)
-                        // Filter out empty strings that might result from multiple spaces or empty lines
-                        String[] wordsInLine = line.trim().split("\\s+");
-                        long actualWords = Arrays.stream(wordsInLine)
-                                .filter(word -> !word.isEmpty())
-                                .count();
-                        wordCount += actualWords;
-                    }
-                    System.out.println("\n--- End of File Content ---");
-
-                    // Print the summary report
-                    System.out.println("\n--- File Summary Report ---");
-                    System.out.println("File Name: " + selectedFilePath.getFileName());
-                    System.out.println("Full Path: " + selectedFilePath.toAbsolutePath());
-                    System.out.println("Number of Lines: " + lineCount);
-                    System.out.println("Number of Words: " + wordCount);
-                    System.out.println("Number of Characters: " + charCount);
-                    System.out.println("---------------------------\n");
-
+                try {
+                    inspectFile(selectedFilePath, options);
                 } catch (NoSuchFileException e) {
-                    System.err.println("Error: The selected file does not exist: " + e.getFile());
+                    printError("Error: The selected file does not exist: " + e.getFile());
                     e.printStackTrace();
                 } catch (IOException e) {
-                    System.err.println("An I/O error occurred while reading the file: " + e.getMessage());
+                    printError("An I/O error occurred while reading the file: " + e.getMessage());
                     e.printStackTrace();
                 }
 
@@ -111,12 +284,824 @@ public class FileInspector {
             }
 
         } catch (SecurityException e) {
-            System.err.println("Security Error: Permission denied to access file or directory. " + e.getMessage());
+            printError("Security Error: Permission denied to access file or directory. " + e.getMessage());
             e.printStackTrace();
         } catch (Exception e) {
             // Catch any other unexpected exceptions
-            System.err.println("An unexpected error occurred: " + e.getMessage());
+            printError("An unexpected error occurred: " + e.getMessage());
             e.printStackTrace();
         }
     }
+
+    /**
+     * Inspects every file named by the command line arguments.
+     * A failure on one file is reported and the remaining files are still processed.
+     *
+     * @param options Settings from the command line, including the files, directories or glob patterns.
+     * @return True if every argument resolved and every file was read successfully.
+     */
+    private static boolean inspectArguments(Options options) {
+        boolean allOk = true;
+
+        for (String arg : options.paths) {
+            List<Path> files;
+            try {
+                files = expandArgument(arg);
+            } catch (IOException | SecurityException e) {
+                printError("Error: Unable to resolve '" + arg + "': " + e.getMessage());
+                allOk = false;
+                continue;
+            }
+
+            if (files.isEmpty()) {
+                printError("Error: No files match '" + arg + "'");
+                allOk = false;
+                continue;
+            }
+
+            for (Path file : files) {
+                try {
+                    inspectFile(file, options);
+                } catch (NoSuchFileException e) {
+                    printError("Error: The file does not exist: " + e.getFile());
+                    allOk = false;
+                } catch (IOException | SecurityException e) {
+                    printError("An I/O error occurred while reading " + file + ": " + e.getMessage());
+                    allOk = false;
+                }
+            }
+        }
+        if (options.distinctFiles > 1) {
+            System.out.println("Distinct Words in all " + options.distinctFiles + " files (estimate): "
+                    + options.distinctInAllFiles.estimate());
+        }
+        return allOk;
+    }
+
+    /**
+     * Prints a range of lines of every file named on the command line, using
+     * (and if necessary first building) each file's line index.
+     *
+     * @param options Settings from the command line, including the files and the line range.
+     * @return True if every file could be read.
+     */
+    private static boolean printLines(Options options) {
+        if (options.paths.isEmpty()) {
+            printError("Error: --lines takes at least one file");
+            return false;
+        }
+        boolean allOk = true;
+        int interval = options.indexInterval > 0 ? options.indexInterval : DEFAULT_INDEX_INTERVAL;
+
+        for (String arg : options.paths) {
+            Path file = Paths.get(arg);
+            try {
+                if (ArchiveInspector.detect(file) != ArchiveInspector.Format.PLAIN) {
+                    throw new IOException("compressed files have no line index");
+                }
+                LineIndex index = LineIndex.load(file);
+                if (index == null) {
+                    LineIndex.Builder builder = new LineIndex.Builder(interval);
+                    options.inspector.inspect(file, builder);
+                    index = builder.build(Files.getLastModifiedTime(file).toMillis());
+                    index.write(file);
+                }
+
+                // Lines are numbered from 1 on the command line and from 0 in the index
+                for (long first = options.linesFrom - 1; first < options.linesTo; first += MAX_LINES_PER_READ) {
+                    int count = (int) Math.min(MAX_LINES_PER_READ, options.linesTo - first);
+                    List<String> lines = index.readLines(file, first, count);
+                    for (String line : lines) {
+                        System.out.println(line);
+                    }
+                    if (lines.size() < count) {
+                        break;
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                printError("Error: The file does not exist: " + e.getFile());
+                allOk = false;
+            } catch (IOException | SecurityException | InvalidPathException e) {
+                printError("An I/O error occurred while reading " + arg + ": " + e.getMessage());
+                allOk = false;
+            }
+        }
+        return allOk;
+    }
+
+    /**
+     * Follows a single growing file, printing updated totals as it is appended to.
+     *
+     * @param options Settings from the command line, including the one file to follow.
+     * @return False if following stopped because of an error.
+     */
+    private static boolean followFile(Options options) {
+        if (options.paths.size() != 1) {
+            printError("Error: --follow takes exactly one file");
+            return false;
+        }
+        Path path = Paths.get(options.paths.get(0));
+        try {
+            new LogFollower(path, options.followIntervalMillis).follow();
+            return true;
+        } catch (NoSuchFileException e) {
+            printError("Error: The file does not exist: " + e.getFile());
+        } catch (IOException | SecurityException e) {
+            printError("An I/O error occurred while following " + path + ": " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Prints a `wc`-style table for every file below the arguments, walking directories recursively.
+     *
+     * @param options Settings from the command line, including the roots and the filters.
+     * @return True if every argument resolved and every file was counted successfully.
+     */
+    private static boolean inspectTree(Options options) {
+        if (options.paths.isEmpty()) {
+            printError("Error: --recursive takes at least one file or directory");
+            return false;
+        }
+        boolean allOk = true;
+        List<Path> roots = new ArrayList<>();
+
+        for (String arg : options.paths) {
+            try {
+                Path path = Paths.get(arg);
+                // Directories are walked by the DirectoryInspector; globs are expanded here
+                List<Path> matches = Files.isDirectory(path) ? List.of(path) : expandArgument(arg);
+                if (matches.isEmpty()) {
+                    printError("Error: No files match '" + arg + "'");
+                    allOk = false;
+                }
+                roots.addAll(matches);
+            } catch (IOException | SecurityException | InvalidPathException e) {
+                printError("Error: Unable to resolve '" + arg + "': " + e.getMessage());
+                allOk = false;
+            }
+        }
+
+        // Virtual threads are cheap, so by default many more files may be in flight at once
+        int threads = options.threads > 0 ? options.threads
+                : options.virtualThreads ? DEFAULT_VIRTUAL_IN_FLIGHT
+                : Runtime.getRuntime().availableProcessors();
+        DirectoryInspector inspector = new DirectoryInspector(options.includes, options.excludes, threads,
+                options.virtualThreads, options.cache, options.inspector, options.hash, options.sha256,
+                options.report);
+        return inspector.inspect(roots) && allOk;
+    }
+
+    /**
+     * Turns one command line argument into the sorted list of regular files it names.
+     *
+     * @param arg A file, a directory (its direct regular files are used) or a glob pattern.
+     * @return The matching files; empty if nothing matched.
+     * @throws IOException If a directory cannot be listed.
+     */
+    static List<Path> expandArgument(String arg) throws IOException {
+        int firstMeta = indexOfGlobMeta(arg);
+
+        if (firstMeta < 0) {
+            Path path = Paths.get(arg);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> entries = Files.list(path)) {
+                    return entries.filter(Files::isRegularFile)
+                            .sorted()
+                            .collect(Collectors.toList());
+                }
+            }
+            // Plain file (a missing file is reported when it is opened)
+            List<Path> single = new ArrayList<>();
+            single.add(path);
+            return single;
+        }
+
+        // Walk from the deepest directory that contains no glob characters
+        String separator = FileSystems.getDefault().getSeparator();
+        int baseEnd = Math.max(arg.lastIndexOf('/', firstMeta), arg.lastIndexOf(separator, firstMeta));
+        Path base = baseEnd < 0 ? Paths.get("") : Paths.get(arg.substring(0, baseEnd + 1));
+        String pattern = baseEnd < 0 ? arg : arg.substring(baseEnd + 1);
+
+        // Without "**" a glob cannot cross directories, so the walk depth is bounded by its segments
+        int maxDepth = pattern.contains("**")
+                ? Integer.MAX_VALUE
+                : pattern.split("[/\\\\]").length;
+
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        if (!Files.isDirectory(base)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> walk = Files.walk(base, maxDepth)) {
+            return walk.filter(Files::isRegularFile)
+                    .filter(p -> matcher.matches(base.relativize(p)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Finds the first glob metacharacter in an argument.
+     *
+     * @param arg The command line argument.
+     * @return Index of the first '*', '?', '[' or '{', or -1 if there is none.
+     */
+    private static int indexOfGlobMeta(String arg) {
+        for (int i = 0; i < arg.length(); i++) {
+            char c = arg.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads a file, echoes it to the console and prints the File Summary Report.
+     *
+     * @param selectedFilePath The file to inspect.
+     * @param options          Settings from the command line.
+     * @throws IOException If the file cannot be opened or read.
+     */
+    private static void inspectFile(Path selectedFilePath, Options options) throws IOException {
+        if (options.report != null) {
+            recordFile(selectedFilePath, options);
+            return;
+        }
+
+        // Extra statistics gathered in the same pass, or null if none were asked for
+        ContentReport extras = ContentReport.create(options);
+
+        ArchiveInspector.Format format = ArchiveInspector.detect(selectedFilePath);
+        if (format != ArchiveInspector.Format.PLAIN) {
+            inspectArchive(selectedFilePath, format, extras, options.metrics);
+            return;
+        }
+
+        if (options.echo) {
+            System.out.println("--- Reading File: " + selectedFilePath.getFileName() + " ---");
+        }
+
+        InspectionResult result;
+        if (Files.isRegularFile(selectedFilePath)) {
+            try {
+                if (options.cache != null && !options.echo && extras == null) {
+                    // Nothing to echo, so an unchanged file need not be read at all
+                    result = options.cache.inspect(selectedFilePath, options.inspector);
+                } else {
+                    // Fast path: count the raw bytes of the file, then echo them
+                    result = options.inspector.inspect(selectedFilePath, ContentReport.observer(extras));
+                }
+                if (options.echo) {
+                    echoFile(selectedFilePath);
+                }
+            } catch (CharacterCodingException e) {
+                // Not valid UTF-8: the reader path echoes what it can and reports the error
+                result = countWithReader(selectedFilePath, options.echo, options.metrics);
+                extras = ContentReport.unavailable(extras, "the file is not valid UTF-8");
+            }
+        } else if (!options.echo) {
+            result = options.inspector.inspect(selectedFilePath, ContentReport.observer(extras));
+        } else {
+            // A pipe can only be read once, so it is echoed while it is counted
+            result = countWithReader(selectedFilePath, true, options.metrics);
+            extras = ContentReport.unavailable(extras, "echoed pipes are counted as text");
+        }
+
+        if (options.echo) {
+            // Every echoed line ends with a line break, like println did
+            if (result.endsMidLine()) {
+                System.out.println();
+            }
+            System.out.println("\n--- End of File Content ---");
+        }
+
+        // Print the summary report
+        System.out.println("\n--- File Summary Report ---");
+        System.out.println("File Name: " + selectedFilePath.getFileName());
+        System.out.println("Full Path: " + selectedFilePath.toAbsolutePath());
+        System.out.println("Number of Lines: " + result.getLineCount());
+        System.out.println("Number of Words: " + result.getWordCount());
+        System.out.println("Number of Characters: " + result.getCharCount());
+        System.out.println("---------------------------\n");
+
+        if (extras != null) {
+            extras.print(Files.isRegularFile(selectedFilePath) ? selectedFilePath : null);
+        }
+    }
+
+    /**
+     * Counts a file and writes its machine-readable record instead of the File Summary Report.
+     * Compressed files get one record with the total of their entries.
+     *
+     * @param path    The file to inspect.
+     * @param options Settings from the command line.
+     * @throws IOException If the file cannot be opened or read.
+     */
+    private static void recordFile(Path path, Options options) throws IOException {
+        long startNanos = System.nanoTime();
+        InspectionResult result;
+        try {
+            if (options.cache != null && Files.isRegularFile(path)) {
+                result = options.cache.inspect(path, options.inspector);
+            } else {
+                result = options.inspector.inspect(path);
+            }
+        } catch (CharacterCodingException e) {
+            result = countWithReader(path, false, options.metrics);
+        }
+        options.report.record(path, result, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Prints a File Summary Report for every entry of a gzip file or zip archive,
+     * followed by an Archive Summary Report with the totals. The compressed bytes
+     * are never echoed.
+     *
+     * @param path    The archive.
+     * @param format  Its format.
+     * @param extras  Extra statistics to gather over all entries, or null.
+     * @param metrics Counters that the archive's content and counting time are added to.
+     * @throws IOException If the archive cannot be read, is corrupt or holds an entry that is not UTF-8 text.
+     */
+    private static void inspectArchive(Path path, ArchiveInspector.Format format, ContentReport extras,
+                                       InspectionMetrics metrics) throws IOException {
+        long startNanos = System.nanoTime();
+        List<Map.Entry<String, InspectionResult>> entries;
+        try {
+            entries = ArchiveInspector.inspectEntries(path, format, ContentReport.observer(extras));
+        } catch (CharacterCodingException e) {
+            throw new IOException("an entry is not valid UTF-8 text", e);
+        }
+
+        for (Map.Entry<String, InspectionResult> entry : entries) {
+            InspectionResult result = entry.getValue();
+            System.out.println("\n--- File Summary Report ---");
+            System.out.println("File Name: " + entry.getKey());
+            System.out.println("Full Path: " + path.toAbsolutePath() + "!/" + entry.getKey());
+            System.out.println("Number of Lines: " + result.getLineCount());
+            System.out.println("Number of Words: " + result.getWordCount());
+            System.out.println("Number of Characters: " + result.getCharCount());
+            System.out.println("---------------------------\n");
+        }
+
+        InspectionResult total = ArchiveInspector.total(entries);
+        metrics.addCount(System.nanoTime() - startNanos);
+        metrics.addFile(total);
+
+        System.out.println("\n--- Archive Summary Report ---");
+        System.out.println("File Name: " + path.getFileName());
+        System.out.println("Full Path: " + path.toAbsolutePath());
+        System.out.println("Format: " + format.name().toLowerCase() + ", " + entries.size()
+                + (entries.size() == 1 ? " entry, " : " entries, ")
+                + total.getByteCount() + " bytes uncompressed");
+        System.out.println("Number of Lines: " + total.getLineCount());
+        System.out.println("Number of Words: " + total.getWordCount());
+        System.out.println("Number of Characters: " + total.getCharCount());
+        System.out.println("------------------------------\n");
+
+        if (extras != null) {
+            extras.print(null);
+        }
+    }
+
+    /**
+     * Copies a file's bytes to the console unchanged. The bytes go from channel
+     * to channel, so the kernel can move them without copying them through the heap.
+     *
+     * @param path The file to echo.
+     * @throws IOException If the file cannot be read.
+     */
+    private static void echoFile(Path path) throws IOException {
+        // Whatever was printed before has to reach the console first
+        System.out.flush();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            // transferTo may move fewer bytes than asked for, so keep going until done
+            while (position < size) {
+                long transferred = channel.transferTo(position, size - position, STDOUT_CHANNEL);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    /**
+     * Counts a file by decoding it through a BufferedReader, optionally echoing the text as it goes.
+     * Used to echo pipes while they are read, and to report decoding errors.
+     *
+     * @param path    The file to count.
+     * @param echo    Whether to copy the text to the console.
+     * @param metrics Counters that the time spent reading and decoding is added to.
+     * @return The counts; the byte count is unknown.
+     * @throws IOException If the file cannot be opened, read or decoded.
+     */
+    private static InspectionResult countWithReader(Path path, boolean echo, InspectionMetrics metrics)
+            throws IOException {
+        TextCounter counter = new TextCounter();
+        long decodeNanos = 0;
+        long countNanos = 0;
+
+        // Use try-with-resources to ensure the BufferedReader is automatically closed
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            char[] buffer = new char[READ_BUFFER_CHARS];
+            // Read the file a chunk at a time until the end; reading and decoding cannot be timed apart
+            while (true) {
+                long decodeStart = System.nanoTime();
+                int read = reader.read(buffer, 0, buffer.length);
+                long countStart = System.nanoTime();
+                decodeNanos += countStart - decodeStart;
+                if (read <= 0) {
+                    break;
+                }
+                if (echo) {
+                    // Echo the text to the screen exactly as it was read
+                    System.out.append(CharBuffer.wrap(buffer, 0, read));
+                }
+                counter.accept(buffer, 0, read);
+                countNanos += System.nanoTime() - countStart;
+            }
+        } finally {
+            metrics.addDecode(decodeNanos);
+            metrics.addCount(countNanos);
+        }
+        InspectionResult result = InspectionResult.of(counter, InspectionResult.UNKNOWN_BYTES);
+        metrics.addFile(result);
+        return result;
+    }
+
+    /**
+     * Statistics beyond the File Summary Report that are gathered while a file
+     * is counted, and printed after its report.
+     */
+    private static class ContentReport {
+
+        private final Options options;
+        private final WordTokenizer tokenizer;
+        private final WordFrequencyTable frequencies;
+        private final DistinctWordEstimator distinct;
+        private final LineIndex.Builder lineIndex;
+        private final PatternSearch.Matcher matcher;
+        private final ContentHasher hasher;
+
+        // Everything that wants to see the file's bytes
+        private final List<ContentObserver> observers = new ArrayList<>();
+
+        private ContentReport(Options options) {
+            this.options = options;
+            frequencies = options.topWords > 0 ? new WordFrequencyTable(options.topDistinct) : null;
+            distinct = options.distinct ? new DistinctWordEstimator() : null;
+            if (frequencies != null || distinct != null) {
+                tokenizer = new WordTokenizer((bytes, offset, length) -> {
+                    if (frequencies != null) {
+                        frequencies.word(bytes, offset, length);
+                    }
+                    if (distinct != null) {
+                        distinct.word(bytes, offset, length);
+                    }
+                });
+                observers.add(tokenizer);
+            } else {
+                tokenizer = null;
+            }
+            lineIndex = options.indexInterval > 0 ? new LineIndex.Builder(options.indexInterval) : null;
+            if (lineIndex != null) {
+                observers.add(lineIndex);
+            }
+            matcher = options.patternSearch != null ? options.patternSearch.newMatcher(options.grepLines) : null;
+            if (matcher != null) {
+                observers.add(matcher);
+            }
+            hasher = options.hash ? new ContentHasher(options.sha256) : null;
+            if (hasher != null) {
+                observers.add(hasher);
+            }
+        }
+
+        /**
+         * @param options Settings from the command line.
+         * @return A report for one file, or null if no extra statistic was asked for.
+         */
+        static ContentReport create(Options options) {
+            return options.topWords > 0 || options.distinct || options.indexInterval > 0
+                    || options.patternSearch != null || options.hash
+                    ? new ContentReport(options)
+                    : null;
+        }
+
+        /**
+         * @param report A report, or null.
+         * @return The observer that feeds the report, or null if there is no report.
+         */
+        static ContentObserver observer(ContentReport report) {
+            if (report == null) {
+                return null;
+            }
+            if (report.observers.size() == 1) {
+                return report.observers.get(0);
+            }
+            return chunk -> {
+                for (ContentObserver observer : report.observers) {
+                    // Each observer gets the chunk as it was, whatever the previous one did with it
+                    observer.accept(chunk.duplicate());
+                }
+            };
+        }
+
+        /**
+         * Notes that the statistics could not be gathered for a file.
+         *
+         * @param report The report, or null.
+         * @param reason Why the statistics are missing.
+         * @return Null, as the report has to be dropped.
+         */
+        static ContentReport unavailable(ContentReport report, String reason) {
+            if (report != null) {
+                printError("Note: content statistics are not available: " + reason);
+            }
+            return null;
+        }
+
+        /**
+         * Prints the statistics and writes the line index; the file must have been
+         * counted completely. The distinct-word sketch is also added to the one
+         * covering all files.
+         *
+         * @param indexedFile The file the line index belongs to, or null if it cannot have one.
+         * @throws IOException If the line index cannot be written.
+         */
+        void print(Path indexedFile) throws IOException {
+            if (tokenizer != null) {
+                tokenizer.finish();
+            }
+
+            if (frequencies != null) {
+                System.out.println("--- Top " + options.topWords + " Words ---");
+                for (WordFrequencyTable.WordCount word : frequencies.top(options.topWords)) {
+                    if (frequencies.isApproximate()) {
+                        System.out.printf("%12d  %s  (may be over by %d)%n",
+                                word.getCount(), word.getWord(), word.getError());
+                    } else {
+                        System.out.printf("%12d  %s%n", word.getCount(), word.getWord());
+                    }
+                }
+                if (frequencies.isApproximate()) {
+                    System.out.println("More than " + frequencies.getDistinctWords()
+                            + " distinct words: counts are estimates.");
+                }
+                System.out.println("---------------------------\n");
+            }
+
+            if (distinct != null) {
+                System.out.println("Distinct Words (estimate): " + distinct.estimate());
+                System.out.println();
+                options.distinctInAllFiles.merge(distinct);
+                options.distinctFiles++;
+            }
+
+            if (matcher != null) {
+                System.out.println("--- Pattern Matches ---");
+                List<String> patterns = options.patternSearch.getPatterns();
+                for (int p = 0; p < patterns.size(); p++) {
+                    StringBuilder lines = new StringBuilder();
+                    for (long line : matcher.getLines(p)) {
+                        lines.append(lines.length() == 0 ? "  (lines " : ", ").append(line);
+                    }
+                    if (lines.length() > 0) {
+                        lines.append(matcher.getLines(p).length < matcher.getHits(p) ? ", ...)" : ")");
+                    }
+                    System.out.printf("%12d  %s%s%n", matcher.getHits(p), patterns.get(p), lines);
+                }
+                System.out.println("---------------------------\n");
+            }
+
+            if (hasher != null) {
+                System.out.printf("CRC32C: %08x%n", hasher.getCrc32c());
+                if (hasher.getSha256() != null) {
+                    System.out.println("SHA-256: " + hasher.getSha256());
+                }
+                System.out.println();
+            }
+
+            if (lineIndex != null) {
+                if (indexedFile == null) {
+                    printError("Note: compressed files get no line index");
+                } else {
+                    LineIndex index = lineIndex.build(Files.getLastModifiedTime(indexedFile).toMillis());
+                    index.write(indexedFile);
+                    System.out.println("Line index: " + LineIndex.indexPathFor(indexedFile).getFileName()
+                            + " (" + index.getSampleCount() + " of " + index.getLineCount() + " line starts)");
+                    System.out.println();
+                }
+            }
+        }
+    }
+
+    /**
+     * Settings parsed from the command line.
+     */
+    private static class Options {
+
+        // Files, directories and glob patterns to inspect; empty means "use the JFileChooser"
+        final List<String> paths = new ArrayList<>();
+
+        // Pool used to count each file in parallel chunks, or null to count sequentially
+        ForkJoinPool parallelPool = null;
+
+        // The counting engine, set up once the options are known, and the counters it adds to
+        TextInspector inspector = null;
+        final InspectionMetrics metrics = new InspectionMetrics();
+
+        // Print the throughput and time breakdown at the end
+        boolean stats = false;
+
+        // Whether file content is copied to the console before each report
+        boolean echo = true;
+
+        // Walk directories recursively and print one table row per file
+        boolean recursive = false;
+
+        // File name / relative path globs for the recursive walk
+        final List<String> includes = new ArrayList<>();
+        final List<String> excludes = new ArrayList<>();
+
+        // Number of files counted at the same time in recursive mode; 0 picks a default
+        int threads = 0;
+
+        // Count each file on its own virtual thread in recursive mode
+        boolean virtualThreads = false;
+
+        // Keep counting one growing file, and how long to wait between checks at most
+        boolean follow = false;
+        long followIntervalMillis = 1000;
+
+        // Result cache settings, and the cache itself once it is loaded
+        Path cacheFile = null;
+        int cacheMaxEntries = DEFAULT_CACHE_ENTRIES;
+        boolean cacheVerify = false;
+        ResultCache cache = null;
+
+        // Number of most frequent words to report per file (0 for none), and the distinct words kept exactly
+        int topWords = 0;
+        int topDistinct = DEFAULT_TOP_DISTINCT;
+
+        // Estimate the distinct words of each file, and of all files together
+        boolean distinct = false;
+        final DistinctWordEstimator distinctInAllFiles = new DistinctWordEstimator();
+        int distinctFiles = 0;
+
+        // Sampling interval of the line index written next to each file (0 for none)
+        int indexInterval = 0;
+
+        // 1-based range of lines to print through the line index instead of inspecting (0 for none)
+        long linesFrom = 0;
+        long linesTo = 0;
+
+        // Literal patterns to count (from --grep and --grep-file), the line numbers listed
+        // per pattern, and the automaton compiled from them once the options are read
+        final List<String> grepPatterns = new ArrayList<>();
+        final List<Path> grepFiles = new ArrayList<>();
+        int grepLines = DEFAULT_GREP_LINES;
+        PatternSearch patternSearch = null;
+
+        // Fingerprint file content (CRC32C, plus SHA-256 if asked for); --recursive lists duplicates
+        boolean hash = false;
+        boolean sha256 = false;
+
+        // Writer for --format=jsonl or --format=csv records, or null for the text report
+        ReportWriter.Format reportFormat = null;
+        ReportWriter report = null;
+
+        /**
+         * Parses the command line.
+         *
+         * @param args Command line arguments.
+         * @return The parsed settings.
+         * @throws IllegalArgumentException If an option is unknown or has a bad value.
+         */
+        static Options parse(String[] args) {
+            Options options = new Options();
+            boolean optionsEnded = false;
+
+            for (String arg : args) {
+                if (optionsEnded || !arg.startsWith("--")) {
+                    options.paths.add(arg);
+                } else if (arg.equals("--")) {
+                    optionsEnded = true;
+                } else if (arg.equals("--recursive")) {
+                    options.recursive = true;
+                } else if (arg.startsWith("--include=")) {
+                    options.includes.add(arg.substring("--include=".length()));
+                } else if (arg.startsWith("--exclude=")) {
+                    options.excludes.add(arg.substring("--exclude=".length()));
+                } else if (arg.startsWith("--threads=")) {
+                    options.threads = parsePositiveInt(arg);
+                } else if (arg.equals("--follow")) {
+                    options.follow = true;
+                } else if (arg.startsWith("--follow-interval=")) {
+                    options.followIntervalMillis = parsePositiveInt(arg);
+                } else if (arg.startsWith("--cache=")) {
+                    options.cacheFile = Paths.get(arg.substring("--cache=".length()));
+                } else if (arg.startsWith("--cache-max=")) {
+                    options.cacheMaxEntries = parsePositiveInt(arg);
+                } else if (arg.equals("--cache-verify")) {
+                    options.cacheVerify = true;
+                } else if (arg.equals("--virtual-threads")) {
+                    options.virtualThreads = true;
+                } else if (arg.equals("--index")) {
+                    options.indexInterval = DEFAULT_INDEX_INTERVAL;
+                } else if (arg.startsWith("--index=")) {
+                    options.indexInterval = parsePositiveInt(arg);
+                } else if (arg.startsWith("--lines=")) {
+                    parseLineRange(options, arg);
+                } else if (arg.startsWith("--grep=")) {
+                    options.grepPatterns.add(arg.substring("--grep=".length()));
+                } else if (arg.startsWith("--grep-file=")) {
+                    options.grepFiles.add(Paths.get(arg.substring("--grep-file=".length())));
+                } else if (arg.startsWith("--grep-lines=")) {
+                    options.grepLines = parsePositiveInt(arg);
+                } else if (arg.startsWith("--format=")) {
+                    String format = arg.substring("--format=".length());
+                    if (format.equals("jsonl")) {
+                        options.reportFormat = ReportWriter.Format.JSONL;
+                    } else if (format.equals("csv")) {
+                        options.reportFormat = ReportWriter.Format.CSV;
+                    } else if (format.equals("text")) {
+                        options.reportFormat = null;
+                    } else {
+                        throw new IllegalArgumentException("Expected text, jsonl or csv in " + arg);
+                    }
+                } else if (arg.equals("--stats")) {
+                    options.stats = true;
+                } else if (arg.equals("--hash")) {
+                    options.hash = true;
+                } else if (arg.equals("--sha256")) {
+                    options.hash = true;
+                    options.sha256 = true;
+                } else if (arg.equals("--distinct")) {
+                    options.distinct = true;
+                } else if (arg.equals("--top")) {
+                    options.topWords = DEFAULT_TOP_WORDS;
+                } else if (arg.startsWith("--top=")) {
+                    options.topWords = parsePositiveInt(arg);
+                } else if (arg.startsWith("--top-distinct=")) {
+                    options.topDistinct = parsePositiveInt(arg);
+                } else if (arg.equals("--no-echo")) {
+                    options.echo = false;
+                } else if (arg.equals("--parallel")) {
+                    options.parallelPool = ForkJoinPool.commonPool();
+                } else if (arg.startsWith("--parallel=")) {
+                    options.parallelPool = new ForkJoinPool(parsePositiveInt(arg));
+                } else {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+            options.inspector = new TextInspector(options.parallelPool, options.metrics);
+            return options;
+        }
+
+        /**
+         * Parses --lines=N or --lines=N-M.
+         *
+         * @param options The settings to fill in.
+         * @param arg     The whole option.
+         * @throws IllegalArgumentException If the range is not one or two positive numbers in order.
+         */
+        private static void parseLineRange(Options options, String arg) {
+            String value = arg.substring("--lines=".length());
+            int dash = value.indexOf('-');
+            try {
+                options.linesFrom = Long.parseLong(dash < 0 ? value : value.substring(0, dash));
+                options.linesTo = dash < 0 ? options.linesFrom : Long.parseLong(value.substring(dash + 1));
+            } catch (NumberFormatException e) {
+                options.linesFrom = 0;
+            }
+            if (options.linesFrom < 1 || options.linesTo < options.linesFrom) {
+                throw new IllegalArgumentException("Expected a line number or a range like 100-120 in " + arg);
+            }
+        }
+
+        /**
+         * Parses the value of an option written as --name=value.
+         *
+         * @param arg The whole option.
+         * @return The value, which must be at least 1.
+         * @throws IllegalArgumentException If the value is not a positive integer.
+         */
+        private static int parsePositiveInt(String arg) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            try {
+                int parsed = Integer.parseInt(value);
+                if (parsed >= 1) {
+                    return parsed;
+                }
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+            throw new IllegalArgumentException("Expected a positive number in " + arg);
+        }
+    }
 }
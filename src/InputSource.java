@@ -0,0 +1,42 @@
+import java.io.Closeable;
+
+/**
+ * InputSource.java
+ *
+ * Where SafeInput reads what the user types: the few Scanner operations it
+ * needs, with the same results, so the prompts can be backed by something
+ * faster than a Scanner (see ReaderInputSource).
+ */
+public interface InputSource extends Closeable {
+
+    /**
+     * Reads the rest of the current line, like Scanner.nextLine().
+     *
+     * @return The line without its terminator.
+     * @throws java.util.NoSuchElementException If the input has ended.
+     */
+    String nextLine();
+
+    /**
+     * Checks, without consuming anything, whether the next token (after any
+     * whitespace, across lines) is an int, like Scanner.hasNextInt().
+     *
+     * @return Whether nextInt() would succeed.
+     */
+    boolean hasNextInt();
+
+    /**
+     * Skips whitespace and reads the next token as an int, like Scanner.nextInt().
+     *
+     * @return The value.
+     * @throws java.util.InputMismatchException If the token is not an int; it is not consumed.
+     * @throws java.util.NoSuchElementException If the input has ended.
+     */
+    int nextInt();
+
+    /**
+     * Closes the underlying input.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,88 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * InspectionMetrics.java
+ *
+ * Low-overhead counters for telling whether inspection is I/O-bound or
+ * CPU-bound: bytes read, time spent blocked in read calls, time spent
+ * decoding text, time spent counting, and the lines and files done. Every
+ * counter is a LongAdder, so many threads can add to them without contending,
+ * and times are taken once per buffer (hundreds of KB), not per byte.
+ *
+ * Memory-mapped files are not read by calls that can be timed: their pages
+ * are loaded while they are counted, so for them waiting on the disk shows up
+ * as counting time. Reads of pipes and small files are timed separately.
+ */
+public class InspectionMetrics {
+
+    private final long startNanos = System.nanoTime();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder lines = new LongAdder();
+    private final LongAdder readNanos = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+    private final LongAdder countNanos = new LongAdder();
+
+    void addRead(long nanos) {
+        readNanos.add(nanos);
+    }
+
+    void addDecode(long nanos) {
+        decodeNanos.add(nanos);
+    }
+
+    void addCount(long nanos) {
+        countNanos.add(nanos);
+    }
+
+    /**
+     * Records a file that has been inspected completely.
+     *
+     * @param result The file's counts.
+     */
+    void addFile(InspectionResult result) {
+        files.increment();
+        if (result.getByteCount() != InspectionResult.UNKNOWN_BYTES) {
+            bytes.add(result.getByteCount());
+        }
+        lines.add(result.getLineCount());
+    }
+
+    /**
+     * Formats the counters, with rates over the time since the metrics were created.
+     *
+     * @return A two-line summary.
+     */
+    public String summary() {
+        double seconds = Math.max((System.nanoTime() - startNanos) / 1e9, 1e-9);
+        double megabytes = bytes.sum() / (1024.0 * 1024.0);
+        return String.format("Statistics: %d files, %.1f MB in %.3f s (%.1f MB/s, %.0f lines/s)%n"
+                        + "  blocked in read: %.3f s   decoding: %.3f s   counting: %.3f s",
+                files.sum(), megabytes, seconds, megabytes / seconds, lines.sum() / seconds,
+                readNanos.sum() / 1e9, decodeNanos.sum() / 1e9, countNanos.sum() / 1e9);
+    }
+
+    public long getFiles() {
+        return files.sum();
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    public long getLines() {
+        return lines.sum();
+    }
+
+    public long getReadNanos() {
+        return readNanos.sum();
+    }
+
+    public long getDecodeNanos() {
+        return decodeNanos.sum();
+    }
+
+    public long getCountNanos() {
+        return countNanos.sum();
+    }
+}
@@ -0,0 +1,93 @@
+import java.nio.charset.MalformedInputException;
+
+/**
+ * InspectionResult.java
+ *
+ * The immutable outcome of inspecting one piece of text: its size in bytes and
+ * the number of lines, words and characters, counted the same way as the
+ * File Summary Report of FileInspector.
+ */
+public final class InspectionResult {
+
+    // Used as the byte count when text was counted as chars, so its encoded size is unknown
+    public static final long UNKNOWN_BYTES = -1;
+
+    private final long byteCount;
+    private final long lineCount;
+    private final long wordCount;
+    private final long charCount;
+    private final boolean endsMidLine;
+
+    /**
+     * Creates a result.
+     *
+     * @param byteCount   Size of the text in bytes, or UNKNOWN_BYTES.
+     * @param lineCount   Number of lines.
+     * @param wordCount   Number of words.
+     * @param charCount   Number of characters (UTF-16 chars, excluding line terminators).
+     * @param endsMidLine Whether the last line has no line terminator.
+     */
+    public InspectionResult(long byteCount, long lineCount, long wordCount, long charCount, boolean endsMidLine) {
+        this.byteCount = byteCount;
+        this.lineCount = lineCount;
+        this.wordCount = wordCount;
+        this.charCount = charCount;
+        this.endsMidLine = endsMidLine;
+    }
+
+    /**
+     * Creates a result from a counter that has seen all of the text.
+     * The counter is finished by this call.
+     *
+     * @param counter   The counter.
+     * @param byteCount Size of the text in bytes, or UNKNOWN_BYTES.
+     * @return The result.
+     * @throws MalformedInputException If the bytes ended in the middle of a UTF-8 sequence.
+     */
+    public static InspectionResult of(TextCounter counter, long byteCount) throws MalformedInputException {
+        boolean endsMidLine = counter.isMidLine();
+        counter.finish();
+        return new InspectionResult(byteCount, counter.getLineCount(), counter.getWordCount(),
+                counter.getCharCount(), endsMidLine);
+    }
+
+    /**
+     * Adds two results, e.g. to total several files.
+     *
+     * @param other The result to add.
+     * @return A result holding the sums; the byte count is unknown if either one is.
+     */
+    public InspectionResult plus(InspectionResult other) {
+        long bytes = byteCount == UNKNOWN_BYTES || other.byteCount == UNKNOWN_BYTES
+                ? UNKNOWN_BYTES
+                : byteCount + other.byteCount;
+        return new InspectionResult(bytes, lineCount + other.lineCount, wordCount + other.wordCount,
+                charCount + other.charCount, other.endsMidLine);
+    }
+
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    public long getWordCount() {
+        return wordCount;
+    }
+
+    public long getCharCount() {
+        return charCount;
+    }
+
+    public boolean endsMidLine() {
+        return endsMidLine;
+    }
+
+    @Override
+    public String toString() {
+        return "InspectionResult[bytes=" + byteCount + ", lines=" + lineCount
+                + ", words=" + wordCount + ", chars=" + charCount + "]";
+    }
+}
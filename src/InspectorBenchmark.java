@@ -0,0 +1,236 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * InspectorBenchmark.java
+ *
+ * Compares FileInspector's counting strategies on generated corpora:
+ * the original readLine + trim + split("\\s+") loop, the Reader + TextCounter
+ * path, the memory-mapped byte path and the parallel chunked path. For every
+ * corpus shape (ASCII prose, UTF-8 heavy text, very long lines, mostly empty
+ * lines and control-character-heavy "binary-ish" text) and size, each strategy
+ * is warmed up (WARMUP_ROUNDS rounds and at least WARMUP_NANOS, so the JIT
+ * has compiled the hot loops) and then timed; the table shows throughput in
+ * MB/s and the bytes allocated per MB of input, summed over all live threads
+ * as measured by com.sun.management.ThreadMXBean, so the pool workers of the
+ * parallel strategy are included. A thread that ends between the two samples
+ * drops out of the sum, so that strategy's figure (marked ~) is approximate.
+ * Every strategy's totals are also checked against the baseline, so a faster
+ * but wrong engine shows up immediately.
+ *
+ * This is a plain main() loop, not a JMH harness: it runs in a single JVM
+ * without forks, so compare figures only between runs on the same JVM.
+ *
+ * Run with: java InspectorBenchmark [SIZE_MB]...   (default 1 16 64)
+ */
+public class InspectorBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final long WARMUP_NANOS = 2_000_000_000L;
+    private static final int MEASURED_ROUNDS = 5;
+
+    /**
+     * One way of counting a file.
+     */
+    private interface Strategy {
+        long[] count(Path file) throws IOException;
+    }
+
+    // Strategies that allocate on other threads, whose allocation figure is approximate
+    private static final String PARALLEL_NAME = "parallel mapped";
+
+    /**
+     * Main method to run the benchmark.
+     *
+     * @param args Corpus sizes in megabytes.
+     * @throws IOException If a corpus cannot be written or read.
+     */
+    public static void main(String[] args) throws IOException {
+        int[] sizesMb = args.length == 0
+                ? new int[]{1, 16, 64}
+                : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+
+        List<String> names = new ArrayList<>();
+        List<Strategy> strategies = new ArrayList<>();
+        names.add("readLine+split");
+        strategies.add(InspectorBenchmark::countWithSplit);
+        names.add("reader+counter");
+        strategies.add(InspectorBenchmark::countWithReader);
+        names.add("mapped bytes");
+        TextInspector sequential = new TextInspector();
+        strategies.add(file -> totals(sequential.inspect(file)));
+        names.add(PARALLEL_NAME);
+        TextInspector parallel = new TextInspector(ForkJoinPool.commonPool());
+        strategies.add(file -> totals(parallel.inspect(file)));
+
+        String[] shapes = {"ascii", "utf8", "long-lines", "empty-lines", "binary-ish"};
+        Path directory = Files.createTempDirectory("inspector-bench");
+
+        System.out.printf("%-12s %6s  %-16s %10s %14s%n", "corpus", "MB", "strategy", "MB/s", "alloc B/MB");
+        try {
+            for (String shape : shapes) {
+                for (int sizeMb : sizesMb) {
+                    Path file = directory.resolve(shape + "-" + sizeMb + ".txt");
+                    generate(file, shape, sizeMb * 1024L * 1024L);
+                    long[] expected = null;
+
+                    for (int s = 0; s < strategies.size(); s++) {
+                        Strategy strategy = strategies.get(s);
+                        long[] result = null;
+                        long warmupStart = System.nanoTime();
+                        for (int i = 0; i < WARMUP_ROUNDS || System.nanoTime() - warmupStart < WARMUP_NANOS; i++) {
+                            result = strategy.count(file);
+                        }
+                        if (expected == null) {
+                            expected = result;
+                        } else if (!Arrays.equals(expected, result)) {
+                            System.out.println("MISMATCH " + names.get(s) + ": " + Arrays.toString(result)
+                                    + " expected " + Arrays.toString(expected));
+                        }
+
+                        long allocatedBefore = allocatedBytes();
+                        long start = System.nanoTime();
+                        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                            strategy.count(file);
+                        }
+                        double seconds = (System.nanoTime() - start) / 1e9;
+                        double megabytes = (double) Files.size(file) * MEASURED_ROUNDS / (1024 * 1024);
+                        long allocated = allocatedBytes() - allocatedBefore;
+
+                        String approximate = names.get(s).equals(PARALLEL_NAME) ? "~" : "";
+                        System.out.printf("%-12s %6d  %-16s %10.1f %14s%n", shape, sizeMb, names.get(s),
+                                megabytes / seconds, approximate + Math.round(allocated / megabytes));
+                    }
+                    Files.delete(file);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(directory);
+        }
+        System.out.println("~ summed over live threads; pool threads that ended during the run are missing");
+    }
+
+    /**
+     * The counting loop FileInspector originally used.
+     */
+    private static long[] countWithSplit(Path file) throws IOException {
+        long lines = 0;
+        long words = 0;
+        long chars = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                chars += line.length();
+                words += Arrays.stream(line.trim().split("\\s+"))
+                        .filter(word -> !word.isEmpty())
+                        .count();
+            }
+        }
+        return new long[]{lines, words, chars};
+    }
+
+    /**
+     * Decoded chars fed to a TextCounter.
+     */
+    private static long[] countWithReader(Path file) throws IOException {
+        TextCounter counter = new TextCounter();
+        char[] buffer = new char[64 * 1024];
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            int read;
+            while ((read = reader.read(buffer, 0, buffer.length)) > 0) {
+                counter.accept(buffer, 0, read);
+            }
+        }
+        return totals(InspectionResult.of(counter, InspectionResult.UNKNOWN_BYTES));
+    }
+
+    private static long[] totals(InspectionResult result) {
+        return new long[]{result.getLineCount(), result.getWordCount(), result.getCharCount()};
+    }
+
+    /**
+     * Bytes allocated so far by all live threads, or 0 where the JVM cannot tell.
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return 0;
+        }
+        long total = 0;
+        for (long allocated : ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(bean.getAllThreadIds())) {
+            if (allocated > 0) {
+                total += allocated; // -1 for a thread that ended after its id was taken
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Writes a corpus of roughly the given size.
+     *
+     * @param file  Where to write it.
+     * @param shape Which kind of text to generate.
+     * @param bytes Approximate size in bytes.
+     * @throws IOException If the file cannot be written.
+     */
+    private static void generate(Path file, String shape, long bytes) throws IOException {
+        Random random = new Random(42);
+        String[] asciiWords = {"the", "quick", "brown", "fox", "jumps", "over", "a", "lazy", "dog,", "42"};
+        String[] utf8Words = {"caf\u00E9", "na\u00EFve", "\u0436\u0438\u0437\u043D\u044C", "\u4E2D\u6587",
+                "\uD83D\uDE00", "stra\u00DFe", "\u03BB", "text"};
+        StringBuilder line = new StringBuilder();
+        long written = 0;
+
+        try (OutputStream out = Files.newOutputStream(file)) {
+            while (written < bytes) {
+                line.setLength(0);
+                switch (shape) {
+                    case "ascii":
+                        appendWords(line, asciiWords, 5 + random.nextInt(12), random);
+                        break;
+                    case "utf8":
+                        appendWords(line, utf8Words, 5 + random.nextInt(12), random);
+                        break;
+                    case "long-lines":
+                        appendWords(line, asciiWords, 20_000, random);
+                        break;
+                    case "empty-lines":
+                        if (random.nextInt(10) == 0) {
+                            appendWords(line, asciiWords, 3, random);
+                        }
+                        break;
+                    default:
+                        // Valid UTF-8, but full of control characters and odd separators
+                        for (int i = 0; i < 80; i++) {
+                            line.append((char) random.nextInt(0x80));
+                        }
+                        break;
+                }
+                line.append('\n');
+                byte[] encoded = line.toString().getBytes(StandardCharsets.UTF_8);
+                out.write(encoded);
+                written += encoded.length;
+            }
+        }
+    }
+
+    private static void appendWords(StringBuilder line, String[] words, int count, Random random) {
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                line.append(random.nextInt(8) == 0 ? "\t" : " ");
+            }
+            line.append(words[random.nextInt(words.length)]);
+        }
+    }
+}
@@ -0,0 +1,335 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * LineIndex.java
+ *
+ * A sidecar index of where the lines of a text file start, so any line can be
+ * read without scanning the file from the beginning. Only every K-th line
+ * start is kept (K is the sampling interval), and the offsets are stored as
+ * variable-length deltas, so the index of a file with 48 million short lines
+ * and K = 1024 is well under a megabyte.
+ *
+ * To read line N, the index gives the start of line K * floor(N / K); the file
+ * is mapped from there and at most K - 1 line terminators are skipped. Line
+ * terminators are the same as the line count's: '\n', '\r' and "\r\n".
+ *
+ * The index records the file's size and modification time, and is ignored as
+ * stale when either has changed.
+ *
+ * File layout: magic, version, K, file size, file modification time (ms),
+ * line count, number of samples, then each sample's distance from the
+ * previous one as an unsigned LEB128 varint.
+ */
+public class LineIndex {
+
+    private static final int MAGIC = 0x4C494458; // "LIDX"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 8 + 8 + 8 + 4;
+
+    /** Suffix appended to a file's name to name its index. */
+    public static final String SUFFIX = ".lidx";
+
+    // Largest window of the text file mapped at once
+    private static final long MAP_WINDOW_BYTES = 1L << 30;
+
+    private final int interval;
+    private final long fileSize;
+    private final long fileModifiedMillis;
+    private final long lineCount;
+    private final long[] samples;
+
+    private LineIndex(int interval, long fileSize, long fileModifiedMillis, long lineCount, long[] samples) {
+        this.interval = interval;
+        this.fileSize = fileSize;
+        this.fileModifiedMillis = fileModifiedMillis;
+        this.lineCount = lineCount;
+        this.samples = samples;
+    }
+
+    /**
+     * Collects line starts from the content of a file while it is being counted.
+     */
+    public static class Builder implements ContentObserver {
+
+        private final int interval;
+        private long[] samples = new long[64];
+        private int sampleCount = 0;
+        private long offset = 0;     // Offset of the next byte
+        private long lineStarts = 0; // Line starts seen so far, including the one at offset 0
+        private long lastStart = 0;
+        private boolean lastWasCR = false;
+
+        /**
+         * Creates a builder.
+         *
+         * @param interval Keep the start of every interval-th line (K).
+         */
+        public Builder(int interval) {
+            this.interval = interval;
+            lineStart(0);
+        }
+
+        @Override
+        public void accept(ByteBuffer chunk) {
+            int end = chunk.limit();
+            for (int i = chunk.position(); i < end; i++) {
+                byte b = chunk.get(i);
+                if (lastWasCR) {
+                    lastWasCR = false;
+                    if (b == '\n') {
+                        // "\r\n" is one terminator; the line starts after the '\n'
+                        lineStart(offset + 1);
+                        offset++;
+                        continue;
+                    }
+                    lineStart(offset);
+                }
+                if (b == '\n') {
+                    lineStart(offset + 1);
+                } else if (b == '\r') {
+                    lastWasCR = true;
+                }
+                offset++;
+            }
+        }
+
+        /**
+         * Completes the index once the whole file has been seen.
+         *
+         * @param fileModifiedMillis The file's modification time, to detect a stale index.
+         * @return The index.
+         */
+        public LineIndex build(long fileModifiedMillis) {
+            if (lastWasCR) {
+                lastWasCR = false;
+                lineStart(offset);
+            }
+            // A start at the very end (after a final terminator, or in an empty file) begins no line
+            long lines = lastStart == offset ? lineStarts - 1 : lineStarts;
+            int kept = sampleCount;
+            if (kept > 0 && samples[kept - 1] == offset) {
+                kept--;
+            }
+            return new LineIndex(interval, offset, fileModifiedMillis, lines, Arrays.copyOf(samples, kept));
+        }
+
+        private void lineStart(long start) {
+            if (lineStarts % interval == 0) {
+                if (sampleCount == samples.length) {
+                    samples = Arrays.copyOf(samples, sampleCount * 2);
+                }
+                samples[sampleCount++] = start;
+            }
+            lineStarts++;
+            lastStart = start;
+        }
+    }
+
+    /**
+     * @param file A text file.
+     * @return Where the file's index is kept.
+     */
+    public static Path indexPathFor(Path file) {
+        return file.resolveSibling(file.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Writes the index next to its file, replacing any older one.
+     *
+     * @param file The text file this index describes.
+     * @throws IOException If the index cannot be written.
+     */
+    public void write(Path file) throws IOException {
+        Path indexFile = indexPathFor(file);
+        Path temporary = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+
+        try (OutputStream stream = Files.newOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(interval);
+            out.writeLong(fileSize);
+            out.writeLong(fileModifiedMillis);
+            out.writeLong(lineCount);
+            out.writeInt(samples.length);
+            long previous = 0;
+            for (long sample : samples) {
+                long delta = sample - previous;
+                // Seven bits per byte, high bit set on every byte but the last
+                while ((delta & ~0x7FL) != 0) {
+                    out.writeByte((int) (delta & 0x7F) | 0x80);
+                    delta >>>= 7;
+                }
+                out.writeByte((int) delta);
+                previous = sample;
+            }
+        }
+        Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads the index of a file if there is one and it is up to date.
+     *
+     * @param file The text file.
+     * @return The index, or null if it is missing, unreadable or stale.
+     * @throws IOException If the text file's attributes cannot be read.
+     */
+    public static LineIndex load(Path file) throws IOException {
+        Path indexFile = indexPathFor(file);
+        if (!Files.isRegularFile(indexFile)) {
+            return null;
+        }
+        long size = Files.size(file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.remaining() < HEADER_BYTES || in.getInt() != MAGIC || in.getInt() != VERSION) {
+                return null;
+            }
+            int interval = in.getInt();
+            long fileSize = in.getLong();
+            long fileModified = in.getLong();
+            long lines = in.getLong();
+            int count = in.getInt();
+            if (interval < 1 || fileSize != size || fileModified != modified || count < 0) {
+                return null;
+            }
+
+            long[] samples = new long[count];
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                long delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = in.get();
+                    delta |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                previous += delta;
+                samples[i] = previous;
+            }
+            return new LineIndex(interval, fileSize, fileModified, lines, samples);
+        } catch (java.nio.BufferUnderflowException e) {
+            // Truncated index: treat it like a missing one
+            return null;
+        }
+    }
+
+    /**
+     * Reads a range of lines through the index.
+     *
+     * @param file  The text file this index describes.
+     * @param first Number of the first line wanted, counting from 0.
+     * @param count Number of lines wanted.
+     * @return The lines without their terminators; fewer than count if the file ends first.
+     * @throws IOException If the file cannot be read.
+     */
+    public List<String> readLines(Path file, long first, int count) throws IOException {
+        List<String> lines = new ArrayList<>();
+        if (first < 0 || first >= lineCount || count <= 0) {
+            return lines;
+        }
+
+        int sample = (int) (first / interval);
+        long toSkip = first - (long) sample * interval;
+        long position = samples[sample];
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteArrayLine line = new ByteArrayLine();
+
+            while (position < size && lines.size() < count) {
+                long length = Math.min(MAP_WINDOW_BYTES, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int i = 0;
+                while (i < length && lines.size() < count) {
+                    byte b = window.get(i++);
+                    if (b != '\n' && b != '\r') {
+                        if (toSkip == 0) {
+                            line.append(b);
+                        }
+                        continue;
+                    }
+                    if (b == '\r') {
+                        // Peek past the window end if needed to keep "\r\n" together
+                        if (i < length) {
+                            if (window.get(i) == '\n') {
+                                i++;
+                            }
+                        } else if (position + i < size && readByte(channel, position + i) == '\n') {
+                            i++;
+                        }
+                    }
+                    if (toSkip > 0) {
+                        toSkip--;
+                    } else {
+                        lines.add(line.toStringAndReset());
+                    }
+                }
+                position += i;
+            }
+            if (position >= size && line.length > 0 && lines.size() < count) {
+                // Last line without a terminator
+                lines.add(line.toStringAndReset());
+            }
+        }
+        return lines;
+    }
+
+    private static byte readByte(FileChannel channel, long position) throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        channel.read(one, position);
+        return one.get(0);
+    }
+
+    /**
+     * @return Number of lines in the file.
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return Number of line starts kept.
+     */
+    public int getSampleCount() {
+        return samples.length;
+    }
+
+    /**
+     * The bytes of the line being read.
+     */
+    private static class ByteArrayLine {
+        private byte[] bytes = new byte[256];
+        private int length = 0;
+
+        void append(byte b) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, length * 2);
+            }
+            bytes[length++] = b;
+        }
+
+        String toStringAndReset() {
+            String text = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            length = 0;
+            return text;
+        }
+    }
+}
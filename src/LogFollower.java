@@ -0,0 +1,152 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LogFollower.java
+ *
+ * Keeps counting a file that is being appended to, like `tail -f`. The
+ * TextCounter carries the partial line and word state between reads, so each
+ * update only reads the bytes appended since the last one and prints the
+ * new running totals.
+ *
+ * A WatchService on the parent directory wakes the follower when the file
+ * changes; the poll interval is only a fallback for file systems that do not
+ * deliver events. If the file shrinks (truncation) or is replaced by a new
+ * file (rotation, detected through the file key / inode) counting restarts
+ * from the beginning of the new content.
+ */
+public class LogFollower {
+
+    private static final int READ_BUFFER_BYTES = 256 * 1024;
+
+    private final Path path;
+    private final long pollMillis;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+
+    // Current file and how far into it has been counted
+    private FileChannel channel = null;
+    private Object fileKey = null;
+    private long offset = 0;
+    private TextCounter counter = new TextCounter();
+
+    /**
+     * Creates a follower.
+     *
+     * @param path       The file to follow.
+     * @param pollMillis Longest wait between checks when no change event arrives.
+     */
+    public LogFollower(Path path, long pollMillis) {
+        this.path = path;
+        this.pollMillis = pollMillis;
+    }
+
+    /**
+     * Follows the file until the thread is interrupted or an error occurs.
+     *
+     * @throws IOException If the file cannot be read or is not valid UTF-8.
+     */
+    public void follow() throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+
+        try (WatchService watcher = directory.getFileSystem().newWatchService()) {
+            directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+
+            catchUp();
+            printTotals(offset);
+
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watcher.poll(pollMillis, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    // Any event in the directory is just a hint to look at the file again
+                    key.pollEvents();
+                    key.reset();
+                }
+                long before = offset;
+                boolean restarted = catchUp();
+                if (restarted || offset != before) {
+                    printTotals(restarted ? offset : offset - before);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Reads whatever was appended since the last call, restarting on truncation or rotation.
+     *
+     * @return True if counting restarted from the beginning of the file.
+     * @throws IOException If the file cannot be read or is not valid UTF-8.
+     */
+    private boolean catchUp() throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            // Between a rotation and the creation of the new file; wait for it
+            return false;
+        }
+
+        boolean restarted = false;
+        boolean replaced = channel != null && attributes.fileKey() != null
+                && !Objects.equals(attributes.fileKey(), fileKey);
+        if (channel == null || replaced || attributes.size() < offset) {
+            if (channel != null) {
+                channel.close();
+                System.out.flush();
+                System.err.println("Note: " + path + (replaced ? " was replaced" : " was truncated")
+                        + "; counting again from the start.");
+                restarted = true;
+            }
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            fileKey = attributes.fileKey();
+            offset = 0;
+            counter = new TextCounter();
+        }
+
+        // Read up to the current end; anything appended meanwhile is picked up next time
+        long end = channel.size();
+        while (offset < end) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            buffer.flip();
+            counter.accept(buffer);
+            offset += read;
+        }
+        return restarted;
+    }
+
+    /**
+     * Prints the running totals, counting an unterminated last line as a line.
+     *
+     * @param newBytes Number of bytes read for this update.
+     */
+    private void printTotals(long newBytes) {
+        long lines = counter.getLineCount() + (counter.isMidLine() ? 1 : 0);
+        System.out.println("Lines: " + lines
+                + "  Words: " + counter.getWordCount()
+                + "  Characters: " + counter.getCharCount()
+                + "  (+" + newBytes + " bytes)");
+        System.out.flush();
+    }
+}
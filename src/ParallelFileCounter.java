@@ -0,0 +1,139 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.MalformedInputException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * ParallelFileCounter.java
+ *
+ * Counts one large file on several ForkJoinPool workers. The file is split
+ * into byte ranges that each start right after a '\n', so no line, word,
+ * "\r\n" pair or UTF-8 sequence can straddle two ranges. Every range is then
+ * counted by its own TextCounter starting from a clean state, and the partial
+ * totals simply add up to exactly what a sequential pass would report.
+ *
+ * A file without any '\n' cannot be split and is counted by a single worker.
+ */
+public class ParallelFileCounter {
+
+    // Ranges smaller than this are not worth splitting further
+    private static final long MIN_RANGE_BYTES = 4L * 1024 * 1024;
+
+    // A range is also never larger than one memory mapping can be
+    private static final long MAX_RANGE_BYTES = 1L << 30;
+
+    // How far ahead to read at a time when looking for the next '\n'
+    private static final int SCAN_WINDOW_BYTES = 64 * 1024;
+
+    /**
+     * Counts a regular file in parallel.
+     *
+     * @param channel Open channel on the file to count; it must be valid UTF-8.
+     * @param pool    The pool whose workers count the ranges.
+     * @return The counter holding the totals; finish() has not been called yet.
+     * @throws MalformedInputException If the file is not valid UTF-8.
+     * @throws IOException If the file cannot be read or mapped.
+     */
+    public static TextCounter count(FileChannel channel, ForkJoinPool pool) throws IOException {
+        long size = channel.size();
+        // Aim for a few ranges per worker so uneven ranges still balance out
+        long target = size / (pool.getParallelism() * 4L);
+        long rangeBytes = Math.max(MIN_RANGE_BYTES, Math.min(MAX_RANGE_BYTES, target));
+
+        try {
+            return pool.invoke(new RangeTask(channel, 0, size, rangeBytes));
+        } catch (UncheckedIOException e) {
+            // Workers cannot throw checked exceptions, so they travel wrapped
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Counts the byte range [start, end) of a file, splitting it in two while it is large.
+     * The range always starts at the beginning of a line.
+     */
+    private static class RangeTask extends RecursiveTask<TextCounter> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private final long rangeBytes;
+
+        RangeTask(FileChannel channel, long start, long end, long rangeBytes) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.rangeBytes = rangeBytes;
+        }
+
+        @Override
+        protected TextCounter compute() {
+            try {
+                if (end - start > rangeBytes) {
+                    long middle = lineStartAtOrAfter(start + (end - start) / 2);
+                    if (middle < end) {
+                        RangeTask first = new RangeTask(channel, start, middle, rangeBytes);
+                        RangeTask second = new RangeTask(channel, middle, end, rangeBytes);
+                        first.fork();
+                        TextCounter secondCount = second.compute();
+                        TextCounter firstCount = first.join();
+                        firstCount.append(secondCount);
+                        return firstCount;
+                    }
+                }
+                return countRange();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Counts this whole range on the current thread.
+         *
+         * @return The counts for the range.
+         * @throws IOException If the range cannot be mapped or is not valid UTF-8.
+         */
+        private TextCounter countRange() throws IOException {
+            TextCounter counter = new TextCounter();
+            for (long position = start; position < end; position += MAX_RANGE_BYTES) {
+                long length = Math.min(MAX_RANGE_BYTES, end - position);
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                counter.accept(segment);
+            }
+            return counter;
+        }
+
+        /**
+         * Finds the first line start at or after a position, i.e. the byte after the next '\n'.
+         *
+         * @param position Where to start looking.
+         * @return The offset just past the next '\n', or end if there is none in this range.
+         * @throws IOException If the file cannot be read.
+         */
+        private long lineStartAtOrAfter(long position) throws IOException {
+            ByteBuffer window = ByteBuffer.allocate(SCAN_WINDOW_BYTES);
+            long offset = position;
+            while (offset < end) {
+                window.clear();
+                window.limit((int) Math.min(SCAN_WINDOW_BYTES, end - offset));
+                int read = channel.read(window, offset);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (window.get(i) == '\n') {
+                        return offset + i + 1;
+                    }
+                }
+                offset += read;
+            }
+            return end;
+        }
+    }
+}
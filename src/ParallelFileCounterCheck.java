@@ -0,0 +1,136 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * ParallelFileCounterCheck.java
+ *
+ * Checks that ParallelFileCounter reports exactly the totals of a sequential
+ * TextCounter pass over the same file. Files of 9 to 40 MB are generated from
+ * pieces that put "\r\n" pairs, lone '\r's, multi-byte UTF-8, control
+ * characters and long lines next to the '\n's the file is split at, so range
+ * boundaries fall in every kind of place. One file has no '\n' at all (a
+ * single range) and one has a malformed byte near its end, which both counts
+ * must reject. With a pool of 8 workers, each file is split into several
+ * ranges of at least 4 MB. Any difference is printed and the program exits
+ * with status 1.
+ *
+ * Run with: java ParallelFileCounterCheck [FILES]   (default 12)
+ */
+public class ParallelFileCounterCheck {
+
+    private static final int PARALLELISM = 8;
+
+    // Pieces of generated files
+    private static final String[] PIECES = {
+            "word ", "a", "  ", "\t", "\n", "\n", "\r\n", "\r", "\n\n", "\u0001", "\u000B\n", "\f",
+            "\u00e9", "\u4e2d", "\ud83d\ude00", "\u0085", " \u007f", "\ufeff"
+    };
+
+    private static long mismatches = 0;
+
+    /**
+     * Main method to run the check.
+     *
+     * @param args Number of generated files.
+     * @throws IOException If a file cannot be written or read.
+     */
+    public static void main(String[] args) throws IOException {
+        int files = args.length == 0 ? 12 : Integer.parseInt(args[0]);
+        Random random = new Random(42);
+        ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+        Path file = Files.createTempFile("parallel-check", ".txt");
+
+        try {
+            for (int i = 0; i < files; i++) {
+                long size = (9 + random.nextInt(32)) * 1024L * 1024L;
+                String kind = i == 0 ? "no-newline" : i == 1 ? "malformed" : "mixed";
+                generate(file, random, size, kind);
+                check(file, pool, kind + " " + size / (1024 * 1024) + " MB");
+            }
+        } finally {
+            pool.shutdown();
+            Files.deleteIfExists(file);
+        }
+
+        System.out.printf("%d files checked, %d mismatches%n", files, mismatches);
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void check(Path file, ForkJoinPool pool, String description) throws IOException {
+        long[] sequential;
+        long[] parallel;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            sequential = countSequentially(channel);
+            parallel = countInParallel(channel, pool);
+        }
+        if (!Arrays.equals(sequential, parallel)) {
+            mismatches++;
+            System.out.println("MISMATCH " + description + ": lines/words/chars " + Arrays.toString(parallel)
+                    + ", expected " + Arrays.toString(sequential));
+        }
+    }
+
+    /**
+     * @return Lines, words and chars, or {-1} if the file is malformed.
+     */
+    private static long[] countSequentially(FileChannel channel) throws IOException {
+        try {
+            TextCounter counter = new TextCounter();
+            counter.accept(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            counter.finish();
+            return new long[]{counter.getLineCount(), counter.getWordCount(), counter.getCharCount()};
+        } catch (MalformedInputException e) {
+            return new long[]{-1};
+        }
+    }
+
+    /**
+     * @return Lines, words and chars, or {-1} if the file is malformed.
+     */
+    private static long[] countInParallel(FileChannel channel, ForkJoinPool pool) throws IOException {
+        try {
+            TextCounter counter = ParallelFileCounter.count(channel, pool);
+            counter.finish();
+            return new long[]{counter.getLineCount(), counter.getWordCount(), counter.getCharCount()};
+        } catch (MalformedInputException e) {
+            return new long[]{-1};
+        }
+    }
+
+    private static void generate(Path file, Random random, long size, String kind) throws IOException {
+        byte[][] pieces = new byte[PIECES.length][];
+        for (int i = 0; i < PIECES.length; i++) {
+            pieces[i] = PIECES[i].getBytes(StandardCharsets.UTF_8);
+        }
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            long written = 0;
+            while (written < size) {
+                byte[] piece = pieces[random.nextInt(pieces.length)];
+                if (kind.equals("no-newline")) {
+                    piece = new String(piece, StandardCharsets.UTF_8).replace('\n', ' ').getBytes(StandardCharsets.UTF_8);
+                } else if (random.nextInt(200_000) == 0) {
+                    // Now and then a line far longer than the rest
+                    piece = new byte[random.nextInt(2 * 1024 * 1024)];
+                    Arrays.fill(piece, (byte) 'x');
+                }
+                out.write(piece);
+                written += piece.length;
+            }
+            if (kind.equals("malformed")) {
+                out.write(new byte[]{'\n', 'a', (byte) 0xC3, '\n'});
+            }
+        }
+    }
+}
@@ -0,0 +1,296 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * PatternSearch.java
+ *
+ * Finds many literal patterns at once in the bytes of a file while it is being
+ * counted, so a separate grep pass is not needed. The patterns are compiled
+ * into an Aho-Corasick automaton over UTF-8 bytes, and the automaton into a
+ * full transition table: every byte costs one table lookup however many
+ * patterns there are, and never any backtracking.
+ *
+ * To keep the table small with thousands of patterns, bytes are first mapped
+ * to classes: each byte that occurs in some pattern gets its own class and all
+ * other bytes share class 0, so the table has one column per distinct pattern
+ * byte rather than 256.
+ *
+ * Matches may overlap (searching for "ab" and "b" in "ab" finds both), and a
+ * pattern that occurs several times on a line is counted each time.
+ */
+public class PatternSearch {
+
+    // Size of the blocks mapped content is copied in before it is scanned
+    private static final int BLOCK_BYTES = 64 * 1024;
+
+    // Largest transition table (states x byte classes) that is built; about 2 GB of ints
+    private static final long MAX_TABLE_ENTRIES = 1L << 29;
+
+    private final String[] patterns;
+    private final int[] byteClass = new int[256];
+    private final int classCount;
+
+    // transitions[state * classCount + class] is the next state; state 0 is the root
+    private final int[] transitions;
+
+    // Pattern that ends exactly at a state (-1 if none), the nearest state along the
+    // failure links where some other pattern ends (-1 if none), and the first state of
+    // that chain that has a pattern: the state itself or its nextOutput (-1 if no match)
+    private final int[] patternAt;
+    private final int[] nextOutput;
+    private final int[] firstOutput;
+
+    /**
+     * Compiles a set of patterns.
+     *
+     * @param patterns The literal patterns; duplicates and empty strings are ignored.
+     * @throws IllegalArgumentException If the automaton for the patterns would be too large.
+     */
+    public PatternSearch(List<String> patterns) {
+        // A set, not a list: with thousands of patterns, contains() on a list would be quadratic
+        Set<String> distinct = new LinkedHashSet<>();
+        List<byte[]> encoded = new ArrayList<>();
+        for (String pattern : patterns) {
+            if (!pattern.isEmpty() && distinct.add(pattern)) {
+                encoded.add(pattern.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        this.patterns = distinct.toArray(new String[0]);
+
+        // Byte classes: 0 for bytes in no pattern
+        int classes = 1;
+        for (byte[] pattern : encoded) {
+            for (byte b : pattern) {
+                if (byteClass[b & 0xFF] == 0) {
+                    byteClass[b & 0xFF] = classes++;
+                }
+            }
+        }
+        classCount = classes;
+
+        // The trie, with each state's children in a linked list: the dense table can only be
+        // sized once the number of states (after shared prefixes) is known
+        int[] firstChild = new int[64];
+        int[] nextSibling = new int[64];
+        int[] edgeClass = new int[64];
+        int[] output = new int[64];
+        Arrays.fill(firstChild, -1);
+        Arrays.fill(output, -1);
+        int states = 1;
+        for (int p = 0; p < encoded.size(); p++) {
+            int state = 0;
+            for (byte b : encoded.get(p)) {
+                int c = byteClass[b & 0xFF];
+                int child = firstChild[state];
+                while (child >= 0 && edgeClass[child] != c) {
+                    child = nextSibling[child];
+                }
+                if (child < 0) {
+                    if (states == firstChild.length) {
+                        if (states > Integer.MAX_VALUE / 2) {
+                            throw new IllegalArgumentException("Too many patterns: over " + states + " trie states");
+                        }
+                        int capacity = states * 2;
+                        firstChild = Arrays.copyOf(firstChild, capacity);
+                        nextSibling = Arrays.copyOf(nextSibling, capacity);
+                        edgeClass = Arrays.copyOf(edgeClass, capacity);
+                        output = Arrays.copyOf(output, capacity);
+                        Arrays.fill(firstChild, states, capacity, -1);
+                        Arrays.fill(output, states, capacity, -1);
+                    }
+                    child = states++;
+                    edgeClass[child] = c;
+                    nextSibling[child] = firstChild[state];
+                    firstChild[state] = child;
+                }
+                state = child;
+            }
+            output[state] = p;
+        }
+
+        long tableSize = (long) states * classCount;
+        if (tableSize > MAX_TABLE_ENTRIES) {
+            throw new IllegalArgumentException("Too many patterns: the automaton would need " + states
+                    + " states x " + classCount + " byte classes, more than " + MAX_TABLE_ENTRIES + " entries");
+        }
+
+        // The dense table; -1 marks a missing edge until the failure links fill it in
+        int[] table = new int[(int) tableSize];
+        Arrays.fill(table, -1);
+        for (int state = 0; state < states; state++) {
+            for (int child = firstChild[state]; child >= 0; child = nextSibling[child]) {
+                table[state * classCount + edgeClass[child]] = child;
+            }
+        }
+        firstChild = null;
+        nextSibling = null;
+        edgeClass = null;
+
+        // Breadth-first: turn the trie into a complete automaton, completing every missing
+        // edge with the edge of the state's failure (longest proper suffix) state
+        int[] failure = new int[states];
+        int[] outputLink = new int[states];
+        Arrays.fill(outputLink, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < classCount; c++) {
+            int child = table[c];
+            if (child < 0) {
+                table[c] = 0;
+            } else {
+                failure[child] = 0;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int fail = failure[state];
+            outputLink[state] = output[fail] >= 0 ? fail : outputLink[fail];
+            for (int c = 0; c < classCount; c++) {
+                int edge = state * classCount + c;
+                int child = table[edge];
+                if (child < 0) {
+                    table[edge] = table[fail * classCount + c];
+                } else {
+                    failure[child] = table[fail * classCount + c];
+                    queue.add(child);
+                }
+            }
+        }
+
+        transitions = table;
+        patternAt = Arrays.copyOf(output, states);
+        nextOutput = outputLink;
+        firstOutput = new int[states];
+        for (int state = 0; state < states; state++) {
+            firstOutput[state] = patternAt[state] >= 0 ? state : nextOutput[state];
+        }
+    }
+
+    /**
+     * @return The distinct, non-empty patterns, in the order given.
+     */
+    public List<String> getPatterns() {
+        return Arrays.asList(patterns);
+    }
+
+    /**
+     * Starts a search over one file.
+     *
+     * @param maxLines How many matching line numbers to keep per pattern.
+     * @return An observer to pass to TextInspector.
+     */
+    public Matcher newMatcher(int maxLines) {
+        return new Matcher(maxLines);
+    }
+
+    /**
+     * The search over one file: hit counts and first matching lines per pattern.
+     */
+    public class Matcher implements ContentObserver {
+
+        private final int maxLines;
+        private final long[] hits = new long[patterns.length];
+        private final long[][] lines;
+        private final int[] lineCounts = new int[patterns.length];
+
+        private int state = 0;
+        private long line = 1;           // Current line, numbered from 1
+        private boolean lastWasCR = false;
+
+        // Copy of the bytes of a buffer without an accessible array, allocated on first use
+        private byte[] block = null;
+
+        private Matcher(int maxLines) {
+            this.maxLines = maxLines;
+            lines = new long[patterns.length][maxLines];
+        }
+
+        @Override
+        public void accept(ByteBuffer chunk) {
+            if (chunk.hasArray()) {
+                scan(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.arrayOffset() + chunk.limit());
+                return;
+            }
+            // Mapped and direct buffers are copied in blocks: indexing a byte[] is much cheaper
+            // than a bounds-checked get() per byte
+            if (block == null) {
+                block = new byte[BLOCK_BYTES];
+            }
+            ByteBuffer source = chunk.duplicate();
+            while (source.hasRemaining()) {
+                int length = Math.min(block.length, source.remaining());
+                source.get(block, 0, length);
+                scan(block, 0, length);
+            }
+        }
+
+        private void scan(byte[] bytes, int start, int end) {
+            // Copies of the fields in locals, so the loop runs on registers
+            int[] transitions = PatternSearch.this.transitions;
+            int[] firstOutput = PatternSearch.this.firstOutput;
+            int[] byteClass = PatternSearch.this.byteClass;
+            int classCount = PatternSearch.this.classCount;
+            int current = state;
+
+            for (int i = start; i < end; i++) {
+                int b = bytes[i] & 0xFF;
+                current = transitions[current * classCount + byteClass[b]];
+                if (firstOutput[current] >= 0) {
+                    report(firstOutput[current]);
+                }
+
+                // A match is on the line it ends in, so the line advances after the terminator
+                if (b == '\n') {
+                    if (!lastWasCR) {
+                        line++;
+                    }
+                    lastWasCR = false;
+                } else if (b == '\r') {
+                    line++;
+                    lastWasCR = true;
+                } else {
+                    lastWasCR = false;
+                }
+            }
+            state = current;
+        }
+
+        /**
+         * Records every pattern on the output chain starting at a state.
+         */
+        private void report(int first) {
+            for (int s = first; s >= 0; s = nextOutput[s]) {
+                int pattern = patternAt[s];
+                hits[pattern]++;
+                int kept = lineCounts[pattern];
+                // Each line is listed once, however often the pattern occurs on it
+                if (kept < maxLines && (kept == 0 || lines[pattern][kept - 1] != line)) {
+                    lines[pattern][kept] = line;
+                    lineCounts[pattern] = kept + 1;
+                }
+            }
+        }
+
+        /**
+         * @param pattern Index of a pattern in getPatterns().
+         * @return How often the pattern occurred.
+         */
+        public long getHits(int pattern) {
+            return hits[pattern];
+        }
+
+        /**
+         * @param pattern Index of a pattern in getPatterns().
+         * @return The first lines (numbered from 1) the pattern occurred on, at most maxLines of them.
+         */
+        public long[] getLines(int pattern) {
+            return Arrays.copyOf(lines[pattern], lineCounts[pattern]);
+        }
+    }
+}
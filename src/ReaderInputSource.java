@@ -0,0 +1,236 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+/**
+ * ReaderInputSource.java
+ *
+ * An InputSource that reads a Reader through one large char buffer and finds
+ * lines and integers by hand, instead of with Scanner's regular expressions,
+ * so scripted or redirected input is read as fast as it arrives.
+ *
+ * It accepts what Scanner accepts with its default settings: lines end at
+ * "\r\n", '\n', '\r', U+2028, U+2029 or U+0085; tokens are separated by
+ * whitespace (Character.isWhitespace); an int is an optional sign and either
+ * plain digits or digits grouped by threes with the locale's grouping
+ * separator (e.g. "1,990"), where a digit is anything Character.isDigit
+ * accepts, and it must fit in an int. Looking ahead for a token reads as much
+ * input as needed but consumes none of it.
+ */
+public class ReaderInputSource implements InputSource {
+
+    private static final int DEFAULT_BUFFER_CHARS = 1 << 16;
+
+    // U+2028 and U+2029 cannot be written as char literals: javac would read their escapes as line breaks
+    private static final char LINE_SEPARATOR = (char) 0x2028;
+    private static final char PARAGRAPH_SEPARATOR = (char) 0x2029;
+
+    // Returned by parseInt for a token that is not an int
+    private static final long NOT_AN_INT = Long.MIN_VALUE;
+
+    private final Reader in;
+    private final char groupingSeparator;
+
+    // Unread input is buffer[position, limit)
+    private char[] buffer;
+    private int position = 0;
+    private int limit = 0;
+    private boolean ended = false;
+
+    /**
+     * Creates a source with a 64K char buffer.
+     *
+     * @param in The input.
+     */
+    public ReaderInputSource(Reader in) {
+        this(in, DEFAULT_BUFFER_CHARS);
+    }
+
+    /**
+     * Creates a source.
+     *
+     * @param in          The input.
+     * @param bufferChars Initial buffer size; it grows if a line or token is longer.
+     */
+    public ReaderInputSource(Reader in, int bufferChars) {
+        this.in = in;
+        this.buffer = new char[Math.max(bufferChars, 16)];
+        // The same locale a Scanner uses for numbers
+        this.groupingSeparator = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT))
+                .getGroupingSeparator();
+    }
+
+    @Override
+    public String nextLine() {
+        if (!available(0)) {
+            throw new NoSuchElementException("No line found");
+        }
+        for (int i = 0; available(i); i++) {
+            char c = buffer[position + i];
+            if (c == '\n' || c == LINE_SEPARATOR || c == PARAGRAPH_SEPARATOR || c == '\u0085') {
+                String line = new String(buffer, position, i);
+                position += i + 1;
+                return line;
+            }
+            if (c == '\r') {
+                String line = new String(buffer, position, i);
+                // "\r\n" is one terminator; this may wait for the next char
+                boolean crlf = available(i + 1) && buffer[position + i + 1] == '\n';
+                position += crlf ? i + 2 : i + 1;
+                return line;
+            }
+        }
+        // Last line without a terminator
+        String line = new String(buffer, position, limit - position);
+        position = limit;
+        return line;
+    }
+
+    @Override
+    public boolean hasNextInt() {
+        int start = skipWhitespace();
+        return available(start) && parseInt(start, tokenEnd(start)) != NOT_AN_INT;
+    }
+
+    @Override
+    public int nextInt() {
+        int start = skipWhitespace();
+        if (!available(start)) {
+            // Like Scanner, trailing whitespace is consumed
+            position += start;
+            throw new NoSuchElementException();
+        }
+        int end = tokenEnd(start);
+        long value = parseInt(start, end);
+        if (value == NOT_AN_INT) {
+            // Like Scanner, the whitespace is consumed but the token is not
+            position += start;
+            throw new InputMismatchException("For input string: \"" + new String(buffer, position, end - start) + "\"");
+        }
+        position += end;
+        return (int) value;
+    }
+
+    @Override
+    public void close() {
+        try {
+            in.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return Offset from position of the first char that is not whitespace (or of the end of input).
+     */
+    private int skipWhitespace() {
+        int i = 0;
+        while (available(i) && Character.isWhitespace(buffer[position + i])) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return Offset from position just past the token starting at start.
+     */
+    private int tokenEnd(int start) {
+        int i = start;
+        while (available(i) && !Character.isWhitespace(buffer[position + i])) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Parses buffer[position + start, position + end) as Scanner's integer syntax.
+     *
+     * @return The value, or NOT_AN_INT.
+     */
+    private long parseInt(int start, int end) {
+        int i = position + start;
+        int stop = position + end;
+        boolean negative = false;
+        if (buffer[i] == '-' || buffer[i] == '+') {
+            negative = buffer[i] == '-';
+            i++;
+        }
+        if (i == stop) {
+            return NOT_AN_INT;
+        }
+
+        // Either plain digits, or 1-3 digits (the first not zero) followed by ",ddd" groups
+        boolean grouped = false;
+        int digitsInGroup = 0;
+        long value = 0;
+        for (int j = i; j < stop; j++) {
+            char c = buffer[j];
+            int digit = Character.isDigit(c) ? Character.digit(c, 10) : -1;
+            if (digit >= 0) {
+                digitsInGroup++;
+                if (grouped && digitsInGroup > 3) {
+                    return NOT_AN_INT;
+                }
+                value = value * 10 + digit;
+                if (value > (long) Integer.MAX_VALUE + 1) {
+                    return NOT_AN_INT;
+                }
+            } else if (c == groupingSeparator) {
+                boolean validGroup = grouped
+                        ? digitsInGroup == 3
+                        : digitsInGroup >= 1 && digitsInGroup <= 3 && Character.digit(buffer[i], 10) != 0;
+                if (!validGroup) {
+                    return NOT_AN_INT;
+                }
+                grouped = true;
+                digitsInGroup = 0;
+            } else {
+                return NOT_AN_INT;
+            }
+        }
+        if (digitsInGroup == 0 || (grouped && digitsInGroup != 3)) {
+            return NOT_AN_INT;
+        }
+
+        value = negative ? -value : value;
+        return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? NOT_AN_INT : value;
+    }
+
+    /**
+     * Makes sure buffer[position + offset] holds input, reading more if needed.
+     *
+     * @return False if the input ends before it.
+     */
+    private boolean available(int offset) {
+        while (position + offset >= limit) {
+            if (ended) {
+                return false;
+            }
+            if (position > 0) {
+                // Keep only the unread input, at the start of the buffer
+                System.arraycopy(buffer, position, buffer, 0, limit - position);
+                limit -= position;
+                position = 0;
+            }
+            if (limit == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            try {
+                int read = in.read(buffer, limit, buffer.length - limit);
+                if (read < 0) {
+                    ended = true;
+                } else {
+                    limit += read;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return true;
+    }
+}
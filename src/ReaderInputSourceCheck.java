@@ -0,0 +1,181 @@
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Scanner;
+
+/**
+ * ReaderInputSourceCheck.java
+ *
+ * Checks that ReaderInputSource answers nextLine, hasNextInt and nextInt
+ * exactly like a Scanner over the same input: the same value, or an exception
+ * of the same type, after every call of a random sequence. Inputs are built
+ * from pieces such as grouped and signed numbers, int limits and overflow,
+ * non-ASCII digits, every line terminator Scanner knows and other whitespace.
+ * The reader hands out 1 to 7 chars per read and the source starts with its
+ * smallest buffer (16 to 20 chars), so lines and tokens straddle reads and
+ * force the buffer to grow. Every round is run with the en_US, de_DE and fr_FR format
+ * locales, whose grouping separators differ. Any difference is printed and
+ * the program exits with status 1.
+ *
+ * Run with: java ReaderInputSourceCheck [ROUNDS]   (default 100000)
+ */
+public class ReaderInputSourceCheck {
+
+    private static final int CALLS_PER_INPUT = 8;
+
+    // U+2028 and U+2029 cannot be written as escapes in a literal: javac would read them as line breaks
+    private static final String LINE_SEPARATOR = String.valueOf((char) 0x2028);
+    private static final String PARAGRAPH_SEPARATOR = String.valueOf((char) 0x2029);
+
+    // Pieces of generated inputs
+    private static final String[] PIECES = {
+            "1990", "-5", "+7", "007", "1,990", "1.990", "1.234.567", "1\u202f990", "1\u00a0990", "12,345,678",
+            "1,99", "0,123", "2147483647", "2147483648", "-2147483648", "-2147483649", "99999999999999999999",
+            "\u0663\u0660", "abc", "12a", "-", "+", ",", "Y", "",
+            " ", "  ", "\t", "\n", "\r", "\r\n", "\u0085", LINE_SEPARATOR, PARAGRAPH_SEPARATOR, "\u00a0", "\u3000"
+    };
+
+    private static final Locale[] LOCALES = {Locale.US, Locale.GERMANY, Locale.FRANCE};
+
+    private static long mismatches = 0;
+    private static long calls = 0;
+
+    /**
+     * One call on either source.
+     */
+    private interface Call {
+        Object run();
+    }
+
+    /**
+     * A Reader that returns at most a few chars per read.
+     */
+    private static class ChunkedReader extends Reader {
+
+        private final String text;
+        private final Random random;
+        private int position = 0;
+
+        ChunkedReader(String text, Random random) {
+            this.text = text;
+            this.random = random;
+        }
+
+        @Override
+        public int read(char[] buf, int off, int len) {
+            if (position >= text.length()) {
+                return -1;
+            }
+            int count = Math.min(len, Math.min(1 + random.nextInt(7), text.length() - position));
+            text.getChars(position, position + count, buf, off);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Main method to run the check.
+     *
+     * @param args Number of generated inputs per locale.
+     */
+    public static void main(String[] args) {
+        int rounds = args.length == 0 ? 100_000 : Integer.parseInt(args[0]);
+        Locale original = Locale.getDefault(Locale.Category.FORMAT);
+
+        try {
+            for (Locale locale : LOCALES) {
+                Locale.setDefault(Locale.Category.FORMAT, locale);
+                Random random = new Random(42);
+                for (int round = 0; round < rounds; round++) {
+                    check(randomInput(random), random, locale);
+                }
+            }
+        } finally {
+            Locale.setDefault(Locale.Category.FORMAT, original);
+        }
+
+        System.out.printf("%d calls checked, %d mismatches%n", calls, mismatches);
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the same random calls on a Scanner and a ReaderInputSource over one input,
+     * stopping at the first difference.
+     */
+    private static void check(String input, Random random, Locale locale) {
+        Scanner scanner = new Scanner(new StringReader(input));
+        ReaderInputSource source = new ReaderInputSource(new ChunkedReader(input, random), 1 + random.nextInt(20));
+        StringBuilder trace = new StringBuilder();
+
+        for (int i = 0; i < CALLS_PER_INPUT; i++) {
+            int call = random.nextInt(3);
+            String expected;
+            String actual;
+            if (call == 0) {
+                expected = outcome(scanner::nextLine);
+                actual = outcome(source::nextLine);
+                trace.append("nextLine");
+            } else if (call == 1) {
+                expected = outcome(scanner::hasNextInt);
+                actual = outcome(source::hasNextInt);
+                trace.append("hasNextInt");
+            } else {
+                expected = outcome(scanner::nextInt);
+                actual = outcome(source::nextInt);
+                trace.append("nextInt");
+            }
+            calls++;
+            trace.append(" -> ").append(escape(expected)).append("; ");
+
+            if (!expected.equals(actual)) {
+                mismatches++;
+                System.out.println("MISMATCH " + locale + " \"" + escape(input) + "\": " + escape(actual)
+                        + ", expected " + trace);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return "v:" and the value returned, or "e:" and the exception thrown.
+     */
+    private static String outcome(Call call) {
+        try {
+            return "v:" + call.run();
+        } catch (RuntimeException e) {
+            return "e:" + e.getClass().getSimpleName();
+        }
+    }
+
+    private static String randomInput(Random random) {
+        StringBuilder input = new StringBuilder();
+        int pieces = random.nextInt(12);
+        for (int i = 0; i < pieces; i++) {
+            input.append(PIECES[random.nextInt(PIECES.length)]);
+        }
+        return input.toString();
+    }
+
+    /**
+     * Makes line breaks, control and non-ASCII characters visible in a message.
+     */
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < ' ' || c > '~') {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,134 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RecordWriter.java
+ *
+ * Writes CSV records straight to their file as they are produced, so memory
+ * use does not grow with the number of records and a crash loses at most the
+ * records since the last flush. Records go into the file's buffer and are
+ * flushed to the file by two policies, whichever comes first: after every
+ * flushEveryRecords records, and flushIntervalMillis after the first record
+ * that has not been flushed yet. The second one runs on a timer, so records
+ * typed at a prompt reach the file even while the program waits for the next.
+ */
+public class RecordWriter implements Closeable {
+
+    /** Default number of records between flushes. */
+    public static final int DEFAULT_FLUSH_EVERY_RECORDS = 1000;
+
+    /** Default longest time a record stays unflushed, in milliseconds. */
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+
+    private final BufferedWriter writer;
+    private final int flushEveryRecords;
+    private final ScheduledExecutorService timer;
+
+    // Guarded by this
+    private int unflushedRecords = 0;
+    private long written = 0;
+    private IOException timerFailure = null;
+
+    /**
+     * Creates (or truncates) a file and starts the flush timer.
+     *
+     * @param path                The file to write.
+     * @param flushEveryRecords   Flush after this many records; 0 to flush by time only.
+     * @param flushIntervalMillis Flush records at the latest this long after they were written; 0 for no timer.
+     * @throws IOException If the file cannot be opened.
+     */
+    public RecordWriter(Path path, int flushEveryRecords, long flushIntervalMillis) throws IOException {
+        if (flushEveryRecords < 0 || flushIntervalMillis < 0) {
+            throw new IllegalArgumentException("Flush policies must not be negative");
+        }
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.flushEveryRecords = flushEveryRecords;
+
+        if (flushIntervalMillis > 0) {
+            timer = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "record-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            timer.scheduleWithFixedDelay(this::flushFromTimer, flushIntervalMillis, flushIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            timer = null;
+        }
+    }
+
+    /**
+     * Writes one record followed by a line break.
+     *
+     * @param record The encoded CSV line; it can be reset as soon as this returns.
+     * @throws IOException If writing, or an earlier timed flush, failed.
+     */
+    public synchronized void write(CsvEncoder record) throws IOException {
+        rethrowTimerFailure();
+        record.writeTo(writer);
+        writer.newLine();
+        written++;
+        if (++unflushedRecords == flushEveryRecords) {
+            flush();
+        }
+    }
+
+    /**
+     * Flushes every record written so far to the file.
+     *
+     * @throws IOException If flushing fails.
+     */
+    public synchronized void flush() throws IOException {
+        writer.flush();
+        unflushedRecords = 0;
+    }
+
+    private synchronized void flushFromTimer() {
+        if (unflushedRecords > 0 && timerFailure == null) {
+            try {
+                flush();
+            } catch (IOException e) {
+                // Reported by the next write or by close
+                timerFailure = e;
+            }
+        }
+    }
+
+    private void rethrowTimerFailure() throws IOException {
+        if (timerFailure != null) {
+            throw new IOException("A timed flush failed: " + timerFailure.getMessage(), timerFailure);
+        }
+    }
+
+    /**
+     * @return Number of records written.
+     */
+    public synchronized long getWritten() {
+        return written;
+    }
+
+    /**
+     * Stops the timer, then flushes and closes the file.
+     *
+     * @throws IOException If flushing or closing fails, or an earlier timed flush failed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+        synchronized (this) {
+            writer.close();
+            rethrowTimerFailure();
+        }
+    }
+}
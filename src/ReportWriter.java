@@ -0,0 +1,159 @@
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ReportWriter.java
+ *
+ * Writes one machine-readable record per inspected file, as JSON Lines or as
+ * CSV, so other programs can read FileInspector's results without scraping
+ * the human-oriented report. Records are written as soon as each file is
+ * done, from any thread, through one shared buffered stream. The stream is
+ * flushed at most every FLUSH_INTERVAL_NANOS, and a timer flushes a record
+ * that is still buffered once the interval has passed, so every record is
+ * seen within about two intervals of its file being done, without paying
+ * for a system call per file.
+ *
+ * Fields: path, bytes, lines, words, chars, elapsed_nanos and mb_per_s.
+ * The byte count (and with it the throughput) is unknown for files that
+ * had to be decoded as text; JSON then holds null and CSV an empty field.
+ */
+public class ReportWriter {
+
+    /**
+     * Record formats.
+     */
+    public enum Format {
+        JSONL, CSV
+    }
+
+    private static final long FLUSH_INTERVAL_NANOS = 100_000_000L;
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+    private final PrintStream out;
+    private final Format format;
+
+    // Reused for every record; only touched while holding the lock
+    private final StringBuilder record = new StringBuilder(256);
+    private long lastFlushNanos = System.nanoTime();
+    private boolean unflushed = false;
+
+    /**
+     * Creates a writer, starts its flush timer and, for CSV, writes the header row.
+     *
+     * @param out    The buffered stream to write to.
+     * @param format The record format.
+     */
+    public ReportWriter(PrintStream out, Format format) {
+        this.out = out;
+        this.format = format;
+        if (format == Format.CSV) {
+            out.print("path,bytes,lines,words,chars,elapsed_nanos,mb_per_s\r\n");
+        }
+
+        // A daemon thread, so it never keeps the program alive; output left at exit is flushed by the caller
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "report-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(this::flushFromTimer, FLUSH_INTERVAL_NANOS, FLUSH_INTERVAL_NANOS,
+                TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Writes the record of one file. Safe to call from several threads.
+     *
+     * @param path         The file.
+     * @param result       Its counts.
+     * @param elapsedNanos How long inspecting it took.
+     */
+    public synchronized void record(Path path, InspectionResult result, long elapsedNanos) {
+        long bytes = result.getByteCount();
+        boolean bytesKnown = bytes != InspectionResult.UNKNOWN_BYTES;
+        String throughput = bytesKnown
+                ? String.format(Locale.ROOT, "%.3f", bytes / BYTES_PER_MB / Math.max(elapsedNanos / 1e9, 1e-9))
+                : null;
+
+        record.setLength(0);
+        if (format == Format.JSONL) {
+            record.append("{\"path\":");
+            appendJsonString(path.toString());
+            record.append(",\"bytes\":").append(bytesKnown ? Long.toString(bytes) : "null");
+            record.append(",\"lines\":").append(result.getLineCount());
+            record.append(",\"words\":").append(result.getWordCount());
+            record.append(",\"chars\":").append(result.getCharCount());
+            record.append(",\"elapsed_nanos\":").append(elapsedNanos);
+            record.append(",\"mb_per_s\":").append(throughput == null ? "null" : throughput);
+            record.append("}\n");
+        } else {
+            appendCsvField(path.toString());
+            record.append(',').append(bytesKnown ? Long.toString(bytes) : "");
+            record.append(',').append(result.getLineCount());
+            record.append(',').append(result.getWordCount());
+            record.append(',').append(result.getCharCount());
+            record.append(',').append(elapsedNanos);
+            record.append(',').append(throughput == null ? "" : throughput);
+            record.append("\r\n");
+        }
+        out.append(record);
+
+        unflushed = true;
+        flushIfDue();
+    }
+
+    private synchronized void flushFromTimer() {
+        if (unflushed) {
+            flushIfDue();
+        }
+    }
+
+    private void flushIfDue() {
+        long now = System.nanoTime();
+        if (now - lastFlushNanos >= FLUSH_INTERVAL_NANOS) {
+            out.flush();
+            lastFlushNanos = now;
+            unflushed = false;
+        }
+    }
+
+    /**
+     * Appends a JSON string literal, escaping quotes, backslashes and control characters.
+     */
+    private void appendJsonString(String value) {
+        record.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                record.append('\\').append(c);
+            } else if (c < 0x20) {
+                record.append(String.format("\\u%04x", (int) c));
+            } else {
+                record.append(c);
+            }
+        }
+        record.append('"');
+    }
+
+    /**
+     * Appends a CSV field, quoted (RFC 4180) if it holds a comma, quote or line break.
+     */
+    private void appendCsvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            record.append(value);
+            return;
+        }
+        record.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                record.append('"');
+            }
+            record.append(c);
+        }
+        record.append('"');
+    }
+}
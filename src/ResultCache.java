@@ -0,0 +1,277 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * ResultCache.java
+ *
+ * An on-disk cache of line/word/char counts, so files that have not changed
+ * since an earlier run are answered without being opened. An entry is keyed
+ * by the file's absolute path and is only used while the file's size and
+ * last-modified time (in nanoseconds) still match. Optionally a CRC32C of the
+ * content is stored and checked as well; that still reads the file, but skips
+ * the counting.
+ *
+ * The cache is a compact binary file holding at most a fixed number of entries;
+ * when it is full the least recently used entries are dropped, in memory as
+ * soon as a new entry is added, so a scan of a huge tree keeps no more than
+ * that number of entries either. Several runs may
+ * share one cache file: loading and saving hold an exclusive lock on a
+ * companion ".lock" file, and saving merges with whatever another run wrote in
+ * the meantime before atomically replacing the file.
+ *
+ * All methods are thread-safe.
+ */
+public class ResultCache {
+
+    private static final int MAGIC = 0x46494331; // "FIC1"
+    private static final int VERSION = 2;
+
+    // Stored in place of a checksum when the content was not hashed
+    private static final long NO_CHECKSUM = -1;
+
+    private final Path file;
+    private final int maxEntries;
+    private final boolean verifyContent;
+
+    // In access order, least recently used first, and never more than maxEntries: the eldest entry
+    // is dropped as soon as a new one is added beyond that. Each entry's last-use time keeps the
+    // recency across runs, and orders the entries when runs are merged
+    private final Map<String, Entry> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * One cached result.
+     */
+    private static class Entry {
+        final long size;
+        final long modifiedNanos;
+        final long checksum;
+        final long lines;
+        final long words;
+        final long chars;
+        final boolean endsMidLine;
+        long lastUsedMillis;
+
+        Entry(long size, long modifiedNanos, long checksum, long lines, long words, long chars,
+              boolean endsMidLine, long lastUsedMillis) {
+            this.size = size;
+            this.modifiedNanos = modifiedNanos;
+            this.checksum = checksum;
+            this.lines = lines;
+            this.words = words;
+            this.chars = chars;
+            this.endsMidLine = endsMidLine;
+            this.lastUsedMillis = lastUsedMillis;
+        }
+    }
+
+    private ResultCache(Path file, int maxEntries, boolean verifyContent) {
+        this.file = file;
+        this.maxEntries = maxEntries;
+        this.verifyContent = verifyContent;
+        // Inside the subclass, Entry would mean Map.Entry
+        this.entries = new LinkedHashMap<String, ResultCache.Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ResultCache.Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Opens a cache file, creating an empty cache if the file does not exist yet.
+     * A damaged or incompatible cache file is ignored (and replaced on save).
+     *
+     * @param file          The cache file.
+     * @param maxEntries    Most entries kept; the least recently used are dropped beyond that.
+     * @param verifyContent Whether to also compare a CRC32C of the content before trusting an entry.
+     * @return The loaded cache.
+     * @throws IOException If the lock file cannot be created or locked.
+     */
+    public static ResultCache load(Path file, int maxEntries, boolean verifyContent) throws IOException {
+        ResultCache cache = new ResultCache(file.toAbsolutePath(), maxEntries, verifyContent);
+        try (FileChannel lockChannel = openLock(cache.file)) {
+            // Released when the channel is closed; the file lists the least recently used first
+            lockChannel.lock();
+            cache.entries.putAll(readEntries(cache.file));
+        }
+        return cache;
+    }
+
+    /**
+     * Inspects a file, answering from the cache when the file has not changed.
+     *
+     * @param path      The regular file to inspect.
+     * @param inspector Inspector used when the file is not in the cache.
+     * @return The file's counts.
+     * @throws IOException If the file cannot be read or is not valid UTF-8.
+     */
+    public InspectionResult inspect(Path path, TextInspector inspector) throws IOException {
+        String key = path.toAbsolutePath().normalize().toString();
+        long size = Files.size(path);
+        long modifiedNanos = Files.getLastModifiedTime(path).to(TimeUnit.NANOSECONDS);
+        long checksum = verifyContent ? checksum(path) : NO_CHECKSUM;
+
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.size == size && entry.modifiedNanos == modifiedNanos
+                    && (!verifyContent || entry.checksum == checksum)) {
+                entry.lastUsedMillis = System.currentTimeMillis();
+                hits++;
+                return new InspectionResult(entry.size, entry.lines, entry.words, entry.chars, entry.endsMidLine);
+            }
+            misses++;
+        }
+
+        InspectionResult result = inspector.inspect(path);
+
+        synchronized (this) {
+            entries.put(key, new Entry(size, modifiedNanos, checksum, result.getLineCount(),
+                    result.getWordCount(), result.getCharCount(), result.endsMidLine(), System.currentTimeMillis()));
+        }
+        return result;
+    }
+
+    /**
+     * Writes the cache back to disk, merged with entries other runs saved since it was loaded.
+     *
+     * @throws IOException If the cache file cannot be written.
+     */
+    public synchronized void save() throws IOException {
+        try (FileChannel lockChannel = openLock(file)) {
+            lockChannel.lock();
+
+            // Keep what other runs learned, unless this run used the same path more recently
+            Map<String, Entry> merged = readEntries(file);
+            for (Map.Entry<String, Entry> mine : entries.entrySet()) {
+                Entry theirs = merged.get(mine.getKey());
+                if (theirs == null || theirs.lastUsedMillis <= mine.getValue().lastUsedMillis) {
+                    merged.put(mine.getKey(), mine.getValue());
+                }
+            }
+
+            // Least recently used first, so the oldest entries are the ones dropped
+            List<Map.Entry<String, Entry>> ordered = new ArrayList<>(merged.entrySet());
+            ordered.sort(Comparator.comparingLong(e -> e.getValue().lastUsedMillis));
+            int skip = Math.max(0, ordered.size() - maxEntries);
+
+            Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(temp), 64 * 1024))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(ordered.size() - skip);
+                    for (Map.Entry<String, Entry> e : ordered.subList(skip, ordered.size())) {
+                        Entry entry = e.getValue();
+                        out.writeUTF(e.getKey());
+                        out.writeLong(entry.size);
+                        out.writeLong(entry.modifiedNanos);
+                        out.writeLong(entry.checksum);
+                        out.writeLong(entry.lines);
+                        out.writeLong(entry.words);
+                        out.writeLong(entry.chars);
+                        out.writeBoolean(entry.endsMidLine);
+                        out.writeLong(entry.lastUsedMillis);
+                    }
+                }
+                // Readers never see a half-written cache
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Reads all entries of a cache file.
+     *
+     * @param file The cache file.
+     * @return The entries in file order; empty if the file is missing, damaged or of another version.
+     * @throws IOException If the file exists but cannot be read.
+     */
+    private static Map<String, Entry> readEntries(Path file) throws IOException {
+        Map<String, Entry> result = new LinkedHashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(file), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return result;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                Entry entry = new Entry(in.readLong(), in.readLong(), in.readLong(),
+                        in.readLong(), in.readLong(), in.readLong(), in.readBoolean(), in.readLong());
+                result.put(key, entry);
+            }
+        } catch (NoSuchFileException e) {
+            return result;
+        } catch (EOFException | UTFDataFormatException e) {
+            // Truncated or damaged file: treat it like an empty cache
+            result.clear();
+        }
+        return result;
+    }
+
+    /**
+     * Opens (creating if needed) the lock file that guards a cache file.
+     *
+     * @param file The cache file.
+     * @return A writable channel on the lock file.
+     * @throws IOException If the lock file cannot be opened.
+     */
+    private static FileChannel openLock(Path file) throws IOException {
+        Path lockFile = Paths.get(file + ".lock");
+        return FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Computes the CRC32C of a file's content.
+     *
+     * @param path The file.
+     * @return The checksum.
+     * @throws IOException If the file cannot be read.
+     */
+    private static long checksum(Path path) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+}
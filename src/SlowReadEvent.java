@@ -0,0 +1,25 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * SlowReadEvent.java
+ *
+ * Flight Recorder event for a read call of TextInspector that blocked for at
+ * least the threshold (10 ms unless the recording settings say otherwise),
+ * to find the reads behind an I/O-bound run.
+ */
+@Name("FileInspector.SlowRead")
+@Label("Slow Read")
+@Category("FileInspector")
+@Description("A read from a file or stream blocked for a long time")
+@Threshold("10 ms")
+class SlowReadEvent extends jdk.jfr.Event {
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+}
@@ -0,0 +1,358 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.MalformedInputException;
+
+/**
+ * TextCounter.java
+ *
+ * A single-pass state machine that counts lines, words and characters
+ * while text is fed to it in chunks of any size. It walks every character
+ * exactly once and never allocates, so it can replace the
+ * readLine / trim / split("\\s+") loop FileInspector used to run per line.
+ *
+ * The totals are identical to that loop:
+ * - A line ends at '\n', '\r' or "\r\n" (the same terminators as BufferedReader.readLine),
+ *   and a final line without a terminator is counted only if it is not empty.
+ * - Characters are UTF-16 chars, excluding line terminators (String.length of each line).
+ * - Words are runs of characters between the \s separators (space, tab, \u000B, \f).
+ *   String.trim() also strips other control characters (anything up to ' ') at the ends
+ *   of a line, so a run made only of such characters is a word only when printable
+ *   text appears both before and after it on the same line.
+ *
+ * Text can be fed either as chars or as raw UTF-8 bytes (but not both to the
+ * same counter). The byte path decodes nothing: it counts UTF-16 chars from the
+ * UTF-8 lead bytes and rejects malformed input with the same strictness as the
+ * JDK decoder, so callers can fall back to a Reader and report the error as before.
+ * Runs of plain ASCII text are classified 8 bytes at a time with SWAR
+ * (SIMD within a register) arithmetic on longs, which needs no extra modules
+ * and works on every JVM the project targets.
+ */
+public class TextCounter {
+
+    // Byte-wise constants for the 8-bytes-at-a-time fast path
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long SPACES = 0x2020202020202020L;
+
+    private long lineCount = 0;
+    private long wordCount = 0;
+    private long charCount = 0;
+
+    // State that carries over between chunks
+    private boolean lastWasCR = false;     // Previous char was '\r', so a following '\n' belongs to it
+    private boolean lineHasChars = false;  // Current line has at least one char (decides the final line)
+    private boolean lineVisible = false;   // A char above ' ' has been seen on the current line
+    private boolean inToken = false;       // Currently inside a run of non-separator chars
+    private boolean tokenVisible = false;  // The current run contains a char above ' '
+    private long pendingControlTokens = 0; // Control-only runs that still need printable text after them
+
+    // UTF-8 decoding state for the byte path
+    private int utf8Remaining = 0;         // Continuation bytes still expected
+    private int utf8Lower = 0x80;          // Allowed range of the next continuation byte
+    private int utf8Upper = 0xBF;
+
+    /**
+     * Counts a chunk of characters.
+     *
+     * @param buf Buffer holding the characters.
+     * @param off Index of the first character to count.
+     * @param len Number of characters to count.
+     */
+    public void accept(char[] buf, int off, int len) {
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            char c = buf[i];
+
+            if (c == '\n' || c == '\r') {
+                // "\r\n" is a single terminator
+                if (c == '\n' && lastWasCR) {
+                    lastWasCR = false;
+                    continue;
+                }
+                endLine();
+                lastWasCR = (c == '\r');
+                continue;
+            }
+            lastWasCR = false;
+
+            charCount++;
+            lineHasChars = true;
+
+            if (c == ' ' || c == '\t' || c == '\u000B' || c == '\f') {
+                if (inToken) {
+                    endToken();
+                }
+            } else {
+                if (!inToken) {
+                    inToken = true;
+                    tokenVisible = false;
+                }
+                if (c > ' ' && !tokenVisible) {
+                    visibleTokenStart();
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts a chunk of UTF-8 encoded bytes, from the buffer's position to its limit.
+     * The buffer's position is left unchanged. A multi-byte sequence may be split
+     * across chunks.
+     *
+     * @param buf Buffer holding the bytes.
+     * @throws MalformedInputException If the bytes are not valid UTF-8.
+     */
+    public void accept(ByteBuffer buf) throws MalformedInputException {
+        int end = buf.limit();
+        int lastBlockStart = end - 8;
+        boolean littleEndian = buf.order() == ByteOrder.LITTLE_ENDIAN;
+        int scalarUntil = buf.position(); // Bytes before this go through the per-byte path
+
+        for (int i = buf.position(); i < end; i++) {
+            // Fast path: take 8 bytes at once while they are plain printable ASCII or spaces.
+            // Only safe between UTF-8 sequences and outside a control-only run.
+            if (i >= scalarUntil && i <= lastBlockStart && utf8Remaining == 0 && (!inToken || tokenVisible)) {
+                long block = buf.getLong(i);
+                if (littleEndian) {
+                    block = Long.reverseBytes(block); // Keep the first byte in the top bits
+                }
+                if (isSpacesAndPrintableAscii(block)) {
+                    countSpacesAndPrintableAscii(block);
+                    i += 7; // The loop adds the eighth
+                    continue;
+                }
+                // This block needs the per-byte path; try the next one afterwards
+                scalarUntil = i + 8;
+            }
+
+            int b = buf.get(i) & 0xFF;
+
+            if (utf8Remaining > 0) {
+                // Continuation byte: the char was already counted at its lead byte
+                if (b < utf8Lower || b > utf8Upper) {
+                    throw new MalformedInputException(1);
+                }
+                utf8Lower = 0x80;
+                utf8Upper = 0xBF;
+                utf8Remaining--;
+                continue;
+            }
+
+            if (b < 0x80) {
+                if (b == '\n' || b == '\r') {
+                    if (b == '\n' && lastWasCR) {
+                        lastWasCR = false;
+                        continue;
+                    }
+                    endLine();
+                    lastWasCR = (b == '\r');
+                    continue;
+                }
+                lastWasCR = false;
+
+                charCount++;
+                lineHasChars = true;
+
+                if (b == ' ' || b == '\t' || b == 0x0B || b == '\f') {
+                    if (inToken) {
+                        endToken();
+                    }
+                } else {
+                    if (!inToken) {
+                        inToken = true;
+                        tokenVisible = false;
+                    }
+                    if (b > ' ' && !tokenVisible) {
+                        visibleTokenStart();
+                    }
+                }
+                continue;
+            }
+
+            // Lead byte of a multi-byte sequence; the ranges follow RFC 3629
+            // (no overlong forms, no surrogates, nothing above U+10FFFF)
+            if (b >= 0xC2 && b <= 0xDF) {
+                utf8Remaining = 1;
+                charCount++;
+            } else if (b >= 0xE0 && b <= 0xEF) {
+                utf8Remaining = 2;
+                if (b == 0xE0) {
+                    utf8Lower = 0xA0;
+                } else if (b == 0xED) {
+                    utf8Upper = 0x9F;
+                }
+                charCount++;
+            } else if (b >= 0xF0 && b <= 0xF4) {
+                utf8Remaining = 3;
+                if (b == 0xF0) {
+                    utf8Lower = 0x90;
+                } else if (b == 0xF4) {
+                    utf8Upper = 0x8F;
+                }
+                // Supplementary characters are a surrogate pair in UTF-16
+                charCount += 2;
+            } else {
+                throw new MalformedInputException(1);
+            }
+            lastWasCR = false;
+            lineHasChars = true;
+
+            // Every non-ASCII character is printable as far as trim() and \s are concerned
+            if (!inToken) {
+                inToken = true;
+                tokenVisible = false;
+            }
+            if (!tokenVisible) {
+                visibleTokenStart();
+            }
+        }
+    }
+
+    /**
+     * Checks whether all 8 bytes of a block are in the range 0x20 to 0x7F,
+     * i.e. spaces or printable ASCII: no line terminators, tabs, control characters
+     * or UTF-8 sequences. Tests all bytes at once with SWAR bit tricks.
+     *
+     * @param block 8 bytes, the first one in the most significant bits.
+     * @return True if every byte is between 0x20 and 0x7F.
+     */
+    private static boolean isSpacesAndPrintableAscii(long block) {
+        long nonAscii = block & HIGH_BITS;
+        // A byte below 0x20 borrows when 0x20 is subtracted and sets its high bit
+        long belowSpace = (block - SPACES) & ~block & HIGH_BITS;
+        return (nonAscii | belowSpace) == 0;
+    }
+
+    /**
+     * Counts a block that passed isSpacesAndPrintableAscii. The block holds 8 chars
+     * and starts a word at every printable byte that follows a space (or follows
+     * the end of the previous run).
+     *
+     * @param block 8 bytes, the first one in the most significant bits.
+     */
+    private void countSpacesAndPrintableAscii(long block) {
+        // High bit of each byte is set where the byte is not a space: the XOR leaves
+        // a space as zero, and adding 0x7F carries into the high bit of any non-zero byte
+        long spacesCleared = block ^ SPACES;
+        long nonSpace = (spacesCleared + LOW_BITS) & HIGH_BITS;
+
+        // Same mask moved one byte later, with the state before the block as byte -1
+        long previousNonSpace = (nonSpace >>> 8) | (inToken ? Long.MIN_VALUE : 0L);
+        long wordStarts = nonSpace & ~previousNonSpace;
+
+        if (wordStarts != 0) {
+            // The first new word also validates any control-only runs before it
+            wordCount += pendingControlTokens + Long.bitCount(wordStarts);
+            pendingControlTokens = 0;
+            lineVisible = true;
+        }
+        charCount += 8;
+        lineHasChars = true;
+        lastWasCR = false;
+
+        // The last byte sits in the lowest bits
+        inToken = (nonSpace & 0x80L) != 0;
+        tokenVisible = inToken;
+    }
+
+    /**
+     * Adds the counts of the text that directly follows this counter's text,
+     * as if that text had been fed to this counter. This counter must end at the
+     * start of a line (right after a '\n'), so no state needs to carry over.
+     *
+     * @param following Counter over the text that comes next; it is left unchanged.
+     * @throws IllegalStateException If this counter does not end at the start of a line.
+     */
+    public void append(TextCounter following) {
+        if (lineHasChars || lastWasCR || utf8Remaining > 0) {
+            throw new IllegalStateException("Counter does not end at the start of a line");
+        }
+        lineCount += following.lineCount;
+        wordCount += following.wordCount;
+        charCount += following.charCount;
+
+        // The following text decides where the combined text ends
+        lastWasCR = following.lastWasCR;
+        lineHasChars = following.lineHasChars;
+        lineVisible = following.lineVisible;
+        inToken = following.inToken;
+        tokenVisible = following.tokenVisible;
+        pendingControlTokens = following.pendingControlTokens;
+        utf8Remaining = following.utf8Remaining;
+        utf8Lower = following.utf8Lower;
+        utf8Upper = following.utf8Upper;
+    }
+
+    /**
+     * Tells whether the input so far ends in the middle of a line,
+     * i.e. there are characters after the last line terminator.
+     *
+     * @return True if the last line has not been terminated yet.
+     */
+    public boolean isMidLine() {
+        return lineHasChars;
+    }
+
+    /**
+     * Signals the end of the input so a final line without a terminator is counted.
+     * Must be called once after the last chunk.
+     *
+     * @throws MalformedInputException If the bytes ended in the middle of a UTF-8 sequence.
+     */
+    public void finish() throws MalformedInputException {
+        if (utf8Remaining > 0) {
+            throw new MalformedInputException(1);
+        }
+        if (lineHasChars) {
+            endLine();
+        }
+        lastWasCR = false;
+    }
+
+    /**
+     * Marks the current run as printable: it is a word, and so is every
+     * control-only run sitting between it and earlier printable text on the line.
+     */
+    private void visibleTokenStart() {
+        tokenVisible = true;
+        lineVisible = true;
+        wordCount += pendingControlTokens + 1;
+        pendingControlTokens = 0;
+    }
+
+    /**
+     * Closes the current run of non-separator characters.
+     */
+    private void endToken() {
+        // A control-only run counts later, but only if printable text follows it on this line
+        if (!tokenVisible && lineVisible) {
+            pendingControlTokens++;
+        }
+        inToken = false;
+        tokenVisible = false;
+    }
+
+    /**
+     * Closes the current line; control-only runs at its end are trimmed away.
+     */
+    private void endLine() {
+        lineCount++;
+        lineHasChars = false;
+        lineVisible = false;
+        inToken = false;
+        tokenVisible = false;
+        pendingControlTokens = 0;
+    }
+
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    public long getWordCount() {
+        return wordCount;
+    }
+
+    public long getCharCount() {
+        return charCount;
+    }
+}
@@ -0,0 +1,212 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * TextCounterCheck.java
+ *
+ * Checks that TextCounter reports exactly what FileInspector's original loop
+ * reported: readLine, then trim().split("\\s+") for the words and the line's
+ * length for the chars. Random texts are built from pieces that exercise the
+ * nuances: every line terminator and "\r\n" pair, the \s separators, control
+ * characters that trim() drops only at the ends of a line, non-ASCII and
+ * surrogate pairs. Each text is fed to the char path, and as UTF-8 to the
+ * byte path, in random chunk sizes, so every state carried between chunks
+ * (including a UTF-8 sequence cut in two) is crossed. Some byte inputs get a
+ * random byte inserted; the byte path must then reject exactly the inputs the
+ * JDK's UTF-8 decoder rejects, with a MalformedInputException.
+ *
+ * A third set of texts is mostly printable ASCII with long runs, so the byte
+ * path's 8-bytes-at-a-time (SWAR) blocks are taken and mixed with per-byte
+ * ones. They are fed in larger chunks, through heap and direct buffers in
+ * both byte orders, since the blocks are read with the buffer's order.
+ *
+ * Any difference is printed and the program exits with status 1.
+ *
+ * Run with: java TextCounterCheck [ROUNDS]   (default 300000)
+ */
+public class TextCounterCheck {
+
+    // Pieces of generated texts
+    private static final String[] PIECES = {
+            "a", "b", "word", " ", "  ", "\t", "\n", "\r", "\r\n", "\u0001", "\u000B", "\f", "\u0000",
+            "\u0085", "\u00e9", "\u4e2d", "\ud83d\ude00", "\ufeff", "\u007f"
+    };
+
+    // Pieces of ASCII-heavy texts: long printable runs broken by the odd other character
+    private static final String[] ASCII_PIECES = {
+            "hello ", "world", "  ", "~!x", " \u007f", "a", "b", "\t", "\n", "\r", "\u0001", "\u000B", "\f",
+            "\u00e9", "\ud83d\ude00", "\u0000", "\u0085", "\u4e2d", "\ufeff"
+    };
+
+    // One byte input in this many gets a random byte, which usually makes it malformed
+    private static final int RANDOM_BYTE_ONE_IN = 8;
+
+    private static long mismatches = 0;
+    private static long malformed = 0;
+
+    /**
+     * Main method to run the check.
+     *
+     * @param args Number of generated texts.
+     * @throws IOException Never; all texts are in memory.
+     */
+    public static void main(String[] args) throws IOException {
+        int rounds = args.length == 0 ? 300_000 : Integer.parseInt(args[0]);
+        Random random = new Random(42);
+
+        for (int round = 0; round < rounds; round++) {
+            String text = randomText(random, PIECES, 1 + random.nextInt(40));
+            long[] expected = countWithSplit(text);
+
+            char[] chars = text.toCharArray();
+            TextCounter counter = new TextCounter();
+            for (int position = 0; position < chars.length; ) {
+                int length = Math.min(1 + random.nextInt(6), chars.length - position);
+                counter.accept(chars, position, length);
+                position += length;
+            }
+            counter.finish();
+            compare("chars", text, expected, counter);
+
+            checkBytes(text.getBytes(StandardCharsets.UTF_8), random);
+            if (random.nextInt(RANDOM_BYTE_ONE_IN) == 0) {
+                byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+                int at = random.nextInt(bytes.length + 1);
+                byte[] damaged = new byte[bytes.length + 1];
+                System.arraycopy(bytes, 0, damaged, 0, at);
+                damaged[at] = (byte) random.nextInt(256);
+                System.arraycopy(bytes, at, damaged, at + 1, bytes.length - at);
+                checkBytes(damaged, random);
+            }
+
+            String asciiText = randomText(random, ASCII_PIECES, random.nextInt(120));
+            checkBlocks(asciiText, random);
+        }
+
+        System.out.printf("%d texts checked (%d malformed byte inputs), %d mismatches%n", rounds, malformed, mismatches);
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Feeds UTF-8 bytes to the byte path in random chunks and compares it with the
+     * original loop over the strictly decoded text.
+     */
+    static void checkBytes(byte[] bytes, Random random) throws IOException {
+        String text;
+        try {
+            text = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes)).toString();
+        } catch (CharacterCodingException e) {
+            text = null;
+        }
+
+        TextCounter counter = new TextCounter();
+        boolean rejected = false;
+        try {
+            for (int position = 0; position < bytes.length; ) {
+                int length = Math.min(1 + random.nextInt(6), bytes.length - position);
+                counter.accept(ByteBuffer.wrap(bytes, position, length));
+                position += length;
+            }
+            counter.finish();
+        } catch (MalformedInputException e) {
+            rejected = true;
+        }
+
+        if (text == null) {
+            malformed++;
+            if (!rejected) {
+                mismatches++;
+                System.out.println("MISMATCH bytes " + Arrays.toString(bytes) + ": accepted, expected malformed");
+            }
+        } else if (rejected) {
+            mismatches++;
+            System.out.println("MISMATCH bytes on \"" + escape(text) + "\": rejected as malformed");
+        } else {
+            compare("bytes", text, countWithSplit(text), counter);
+        }
+    }
+
+    /**
+     * Feeds an ASCII-heavy text to the byte path in chunks of up to 40 bytes, each in a heap
+     * or direct buffer of either byte order, and compares it with the original loop.
+     */
+    static void checkBlocks(String text, Random random) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        TextCounter counter = new TextCounter();
+        for (int position = 0; position < bytes.length; ) {
+            int length = Math.min(1 + random.nextInt(40), bytes.length - position);
+            ByteBuffer chunk;
+            if (random.nextBoolean()) {
+                chunk = ByteBuffer.wrap(bytes, position, length).slice();
+            } else {
+                chunk = ByteBuffer.allocateDirect(length);
+                chunk.put(bytes, position, length).flip();
+            }
+            chunk.order(random.nextBoolean() ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            counter.accept(chunk);
+            position += length;
+        }
+        counter.finish();
+        compare("blocks", text, countWithSplit(text), counter);
+    }
+
+    /**
+     * The counting loop FileInspector originally used.
+     */
+    static long[] countWithSplit(String text) throws IOException {
+        long lines = 0;
+        long words = 0;
+        long chars = 0;
+        BufferedReader reader = new BufferedReader(new StringReader(text));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lines++;
+            chars += line.length();
+            String trimmed = line.trim();
+            if (!trimmed.isEmpty()) {
+                words += trimmed.split("\\s+").length;
+            }
+        }
+        return new long[]{lines, words, chars};
+    }
+
+    static String randomText(Random random, String[] from, int pieces) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < pieces; i++) {
+            text.append(from[random.nextInt(from.length)]);
+        }
+        return text.toString();
+    }
+
+    static void compare(String path, String text, long[] expected, TextCounter counter) {
+        long[] actual = {counter.getLineCount(), counter.getWordCount(), counter.getCharCount()};
+        if (!Arrays.equals(expected, actual)) {
+            mismatches++;
+            System.out.println("MISMATCH " + path + " on \"" + escape(text) + "\": lines/words/chars "
+                    + Arrays.toString(actual) + ", expected " + Arrays.toString(expected));
+        }
+    }
+
+    static String escape(String text) {
+        StringBuilder escaped = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x20 || c > 0x7E) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
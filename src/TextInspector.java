@@ -0,0 +1,301 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * TextInspector.java
+ *
+ * The embeddable counting engine behind FileInspector. It counts lines, words
+ * and characters of UTF-8 text from a Path, a ReadableByteChannel or an
+ * InputStream and returns an immutable InspectionResult, with no console
+ * output and no Swing dependency.
+ *
+ * Regular files are read directly for small sizes and memory-mapped for large
+ * ones; with a ForkJoinPool, large files are counted in parallel chunks.
+ * Regular files that start with a gzip or zip signature are decompressed on
+ * the fly and their content is counted instead (see ArchiveInspector).
+ * Small files are read into a buffer of their own size. Channels and streams,
+ * whose size is not known, are read through 256 KB buffers taken from a pool
+ * shared by all threads, which keeps a few idle buffers for reuse and
+ * allocates more when every one is in use.
+ *
+ * A ContentObserver can be passed along to see the bytes as they are counted;
+ * files are then counted sequentially so the observer gets them in order.
+ *
+ * Every call adds its bytes, lines and the time spent blocked in reads and
+ * counting to the inspector's InspectionMetrics, and every file inspected by
+ * path is reported to Flight Recorder as a FileInspectedEvent (reads that
+ * block for long as SlowReadEvents), at no cost when no recording runs.
+ *
+ * An inspector is thread-safe and meant to be shared: create one and call it
+ * from as many threads as needed.
+ */
+public class TextInspector {
+
+    // Files up to this size are read into a buffer of their size instead of being mapped
+    private static final long SMALL_FILE_BYTES = 64 * 1024;
+
+    // Size of each memory-mapped window; a single mapping is limited to 2 GB
+    private static final long MAP_SEGMENT_BYTES = 1L << 30;
+
+    // Files at least this large are split across the pool when there is one
+    private static final long PARALLEL_MIN_BYTES = 8L * 1024 * 1024;
+
+    // Read buffers for channels and streams of unknown size, shared by all threads. A thread-local
+    // buffer would be allocated anew for every task when each task runs on its own (virtual)
+    // thread; the pool keeps at most POOLED_READ_BUFFERS idle ones and allocates when it is empty
+    private static final int READ_BUFFER_BYTES = 256 * 1024;
+    private static final int POOLED_READ_BUFFERS = 2 * Runtime.getRuntime().availableProcessors();
+    private static final BlockingQueue<ByteBuffer> READ_BUFFERS = new ArrayBlockingQueue<>(POOLED_READ_BUFFERS);
+
+    private final ForkJoinPool parallelPool;
+    private final InspectionMetrics metrics;
+
+    /**
+     * Time spent in one call, for its Flight Recorder event and the shared metrics.
+     */
+    private static final class Timing {
+        long readNanos = 0;
+        long countNanos = 0;
+    }
+
+    /**
+     * Creates an inspector that counts every file on the calling thread.
+     */
+    public TextInspector() {
+        this(null);
+    }
+
+    /**
+     * Creates an inspector that counts large files in parallel chunks.
+     *
+     * @param parallelPool Pool for the chunks, or null to count on the calling thread.
+     */
+    public TextInspector(ForkJoinPool parallelPool) {
+        this(parallelPool, new InspectionMetrics());
+    }
+
+    /**
+     * Creates an inspector that adds its throughput and timings to the given metrics.
+     *
+     * @param parallelPool Pool for the chunks, or null to count on the calling thread.
+     * @param metrics      Counters to add to; may be shared with other inspectors.
+     */
+    public TextInspector(ForkJoinPool parallelPool, InspectionMetrics metrics) {
+        this.parallelPool = parallelPool;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return The counters this inspector adds to.
+     */
+    public InspectionMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Inspects a file. Regular files are read or mapped directly; anything
+     * else (pipes, devices) is read as a stream of bytes. For a gzip file or a
+     * zip archive the result is the total of its decompressed entries.
+     *
+     * @param path The file.
+     * @return The counts.
+     * @throws java.nio.charset.MalformedInputException If the file is not valid UTF-8.
+     * @throws IOException If the file cannot be opened or read.
+     */
+    public InspectionResult inspect(Path path) throws IOException {
+        return inspect(path, null);
+    }
+
+    /**
+     * Inspects a file, showing every byte counted to an observer as well.
+     *
+     * @param path     The file.
+     * @param observer Observer of the content, or null.
+     * @return The counts.
+     * @throws java.nio.charset.MalformedInputException If the file is not valid UTF-8.
+     * @throws IOException If the file cannot be opened or read, or the observer fails.
+     */
+    public InspectionResult inspect(Path path, ContentObserver observer) throws IOException {
+        FileInspectedEvent event = new FileInspectedEvent();
+        event.begin();
+        Timing timing = new Timing();
+
+        InspectionResult result = inspectFile(path, observer, timing);
+
+        metrics.addRead(timing.readNanos);
+        metrics.addCount(timing.countNanos);
+        metrics.addFile(result);
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = path.toString();
+            event.bytes = result.getByteCount();
+            event.lines = result.getLineCount();
+            event.words = result.getWordCount();
+            event.chars = result.getCharCount();
+            event.readNanos = timing.readNanos;
+            event.countNanos = timing.countNanos;
+            event.commit();
+        }
+        return result;
+    }
+
+    private InspectionResult inspectFile(Path path, ContentObserver observer, Timing timing) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            ByteBuffer buffer = acquireReadBuffer();
+            try (ReadableByteChannel channel = Files.newByteChannel(path, StandardOpenOption.READ)) {
+                return inspectChannel(channel, observer, timing, buffer);
+            } finally {
+                releaseReadBuffer(buffer);
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ArchiveInspector.Format format = ArchiveInspector.detect(channel);
+            if (format != ArchiveInspector.Format.PLAIN) {
+                // Inflating runs on its own thread; all of it is counted as counting time here
+                long start = System.nanoTime();
+                InspectionResult result = ArchiveInspector.total(ArchiveInspector.inspectEntries(path, format, observer));
+                timing.countNanos += System.nanoTime() - start;
+                return result;
+            }
+
+            long size = channel.size();
+
+            if (size <= SMALL_FILE_BYTES) {
+                // Mapping and unmapping would cost more than the read itself. One byte more than
+                // the size lets a single read see the whole file, and keeps an empty file's buffer non-empty
+                return inspectChannel(channel, observer, timing, ByteBuffer.allocate((int) size + 1));
+            }
+
+            long start = System.nanoTime();
+            try {
+                if (parallelPool != null && observer == null && size >= PARALLEL_MIN_BYTES) {
+                    return InspectionResult.of(ParallelFileCounter.count(channel, parallelPool), size);
+                }
+
+                // Pages of a mapping are read while they are counted, so the two cannot be told apart
+                TextCounter counter = new TextCounter();
+                for (long position = 0; position < size; position += MAP_SEGMENT_BYTES) {
+                    long length = Math.min(MAP_SEGMENT_BYTES, size - position);
+                    MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                    counter.accept(segment);
+                    if (observer != null) {
+                        observer.accept(segment);
+                    }
+                }
+                return InspectionResult.of(counter, size);
+            } finally {
+                timing.countNanos += System.nanoTime() - start;
+            }
+        }
+    }
+
+    /**
+     * Inspects everything a channel delivers until its end. The channel is not closed.
+     *
+     * @param channel The channel.
+     * @return The counts.
+     * @throws java.nio.charset.MalformedInputException If the bytes are not valid UTF-8.
+     * @throws IOException If the channel cannot be read.
+     */
+    public InspectionResult inspect(ReadableByteChannel channel) throws IOException {
+        return inspect(channel, null);
+    }
+
+    /**
+     * Inspects everything a channel delivers until its end, showing every byte
+     * counted to an observer as well. The channel is not closed.
+     *
+     * @param channel  The channel.
+     * @param observer Observer of the content, or null.
+     * @return The counts.
+     * @throws java.nio.charset.MalformedInputException If the bytes are not valid UTF-8.
+     * @throws IOException If the channel cannot be read, or the observer fails.
+     */
+    public InspectionResult inspect(ReadableByteChannel channel, ContentObserver observer) throws IOException {
+        Timing timing = new Timing();
+        ByteBuffer buffer = acquireReadBuffer();
+        InspectionResult result;
+        try {
+            result = inspectChannel(channel, observer, timing, buffer);
+        } finally {
+            releaseReadBuffer(buffer);
+        }
+        metrics.addRead(timing.readNanos);
+        metrics.addCount(timing.countNanos);
+        metrics.addFile(result);
+        return result;
+    }
+
+    private InspectionResult inspectChannel(ReadableByteChannel channel, ContentObserver observer, Timing timing,
+                                            ByteBuffer buffer) throws IOException {
+        TextCounter counter = new TextCounter();
+        long bytes = 0;
+
+        buffer.clear();
+        while (true) {
+            SlowReadEvent readEvent = new SlowReadEvent();
+            readEvent.begin();
+            long readStart = System.nanoTime();
+            int read = channel.read(buffer);
+            long countStart = System.nanoTime();
+            timing.readNanos += countStart - readStart;
+            readEvent.end();
+            if (read > 0 && readEvent.shouldCommit()) {
+                readEvent.bytes = read;
+                readEvent.commit();
+            }
+
+            // Count in large batches rather than after every short read
+            if (read > 0 && buffer.hasRemaining()) {
+                continue;
+            }
+            buffer.flip();
+            counter.accept(buffer);
+            bytes += buffer.remaining();
+            if (observer != null) {
+                observer.accept(buffer);
+            }
+            buffer.clear();
+            timing.countNanos += System.nanoTime() - countStart;
+            if (read < 0) {
+                break;
+            }
+        }
+        return InspectionResult.of(counter, bytes);
+    }
+
+    /**
+     * Inspects everything a stream delivers until its end. The stream is not closed.
+     *
+     * @param in The stream.
+     * @return The counts.
+     * @throws java.nio.charset.MalformedInputException If the bytes are not valid UTF-8.
+     * @throws IOException If the stream cannot be read.
+     */
+    public InspectionResult inspect(InputStream in) throws IOException {
+        // Through the channel path, so streams are timed and reported like channels
+        return inspect(Channels.newChannel(in), null);
+    }
+
+    private static ByteBuffer acquireReadBuffer() {
+        ByteBuffer buffer = READ_BUFFERS.poll();
+        return buffer != null ? buffer : ByteBuffer.allocate(READ_BUFFER_BYTES);
+    }
+
+    private static void releaseReadBuffer(ByteBuffer buffer) {
+        // Dropped for the garbage collector if the pool is already full
+        READ_BUFFERS.offer(buffer);
+    }
+}
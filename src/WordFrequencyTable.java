@@ -0,0 +1,378 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * WordFrequencyTable.java
+ *
+ * Counts how often each word occurs, for reporting the most frequent ones in
+ * files far too large for a HashMap of String to Long. Words are kept as UTF-8
+ * bytes in one shared byte array (the arena) and found through an
+ * open-addressing hash table with linear probing; all per-word data lives in
+ * parallel primitive arrays, so counting a word allocates nothing.
+ *
+ * Memory is bounded by the distinct-word limit. Until the limit is reached the
+ * counts are exact. After that the table switches to the Space-Saving
+ * algorithm (Metwally et al.): a word that is not in the table replaces the
+ * least frequent one and inherits its count plus one, and that inherited count
+ * is kept as the word's possible error. Every word that occurs more often than
+ * (total words / limit) is guaranteed to be in the table, and a reported count
+ * is never more than its error above the true count.
+ */
+public class WordFrequencyTable implements WordSink {
+
+    private static final int INITIAL_ENTRIES = 1024;
+
+    /**
+     * A word and how often it was seen.
+     */
+    public static final class WordCount {
+        private final String word;
+        private final long count;
+        private final long error;
+
+        WordCount(String word, long count, long error) {
+            this.word = word;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String getWord() {
+            return word;
+        }
+
+        /**
+         * @return The count; an upper bound on the true count once the table is approximate.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return How much the count may exceed the true count; 0 while the table is exact.
+         */
+        public long getError() {
+            return error;
+        }
+    }
+
+    private final int maxDistinct;
+
+    // Hash table: entry index + 1 per slot, 0 for an empty slot
+    private int[] slots;
+    private int mask;
+
+    // Per-entry data
+    private int size = 0;
+    private int[] hashes;
+    private int[] offsets;
+    private int[] lengths;
+    private long[] counts;
+    private long[] errors;
+
+    // Word bytes of all entries; bytes of evicted words stay behind until the next compaction
+    private byte[] arena = new byte[16 * 1024];
+    private int arenaUsed = 0;
+    private int arenaGarbage = 0;
+
+    // Min-heap of entry indexes ordered by count, only built once the table is approximate
+    private boolean approximate = false;
+    private int[] heap;
+    private int[] heapPosition;
+
+    private long totalWords = 0;
+
+    /**
+     * Creates an empty table.
+     *
+     * @param maxDistinct Most distinct words kept; beyond it the counts become approximate.
+     */
+    public WordFrequencyTable(int maxDistinct) {
+        this.maxDistinct = maxDistinct;
+        int entries = Math.min(INITIAL_ENTRIES, maxDistinct);
+        hashes = new int[entries];
+        offsets = new int[entries];
+        lengths = new int[entries];
+        counts = new long[entries];
+        slots = new int[tableSizeFor(entries)];
+        mask = slots.length - 1;
+    }
+
+    @Override
+    public void word(byte[] bytes, int offset, int length) {
+        totalWords++;
+        int hash = hash(bytes, offset, length);
+        int slot = hash & mask;
+
+        while (true) {
+            int entry = slots[slot] - 1;
+            if (entry < 0) {
+                break;
+            }
+            if (hashes[entry] == hash && lengths[entry] == length && arenaEquals(offsets[entry], bytes, offset, length)) {
+                counts[entry]++;
+                if (approximate) {
+                    siftDown(heapPosition[entry]);
+                }
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size < maxDistinct) {
+            if (size == hashes.length) {
+                grow();
+                // The slot found above is stale after a rehash
+                slot = findEmptySlot(hash);
+            }
+            int entry = size++;
+            hashes[entry] = hash;
+            offsets[entry] = store(bytes, offset, length);
+            lengths[entry] = length;
+            counts[entry] = 1;
+            slots[slot] = entry + 1;
+        } else {
+            if (!approximate) {
+                startApproximating();
+            }
+            replaceLeastFrequent(hash, bytes, offset, length);
+        }
+    }
+
+    /**
+     * Returns the most frequent words, most frequent first.
+     *
+     * @param k Number of words wanted.
+     * @return Up to k words with their counts.
+     */
+    public List<WordCount> top(int k) {
+        if (k <= 0 || size == 0) {
+            return new ArrayList<>();
+        }
+        // Insertion into a short sorted array is plenty fast for the handful of words usually asked for
+        int[] best = new int[Math.min(k, size)];
+        int filled = 0;
+        for (int entry = 0; entry < size; entry++) {
+            if (filled == best.length && counts[entry] <= counts[best[filled - 1]]) {
+                continue;
+            }
+            int i = filled < best.length ? filled++ : filled - 1;
+            while (i > 0 && counts[best[i - 1]] < counts[entry]) {
+                best[i] = best[i - 1];
+                i--;
+            }
+            best[i] = entry;
+        }
+
+        List<WordCount> result = new ArrayList<>(filled);
+        for (int i = 0; i < filled; i++) {
+            int entry = best[i];
+            String word = new String(arena, offsets[entry], lengths[entry], StandardCharsets.UTF_8);
+            result.add(new WordCount(word, counts[entry], approximate ? errors[entry] : 0));
+        }
+        return result;
+    }
+
+    /**
+     * @return True once more distinct words were seen than the table keeps.
+     */
+    public boolean isApproximate() {
+        return approximate;
+    }
+
+    /**
+     * @return Number of words counted.
+     */
+    public long getTotalWords() {
+        return totalWords;
+    }
+
+    /**
+     * @return Number of distinct words in the table.
+     */
+    public int getDistinctWords() {
+        return size;
+    }
+
+    /**
+     * FNV-1a over the word's bytes, with a final mix so the low bits used as the slot index are well spread.
+     */
+    private static int hash(byte[] bytes, int offset, int length) {
+        int hash = 0x811C9DC5;
+        for (int i = offset; i < offset + length; i++) {
+            hash = (hash ^ (bytes[i] & 0xFF)) * 0x01000193;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    private static int tableSizeFor(int entries) {
+        // At most half full, so probe sequences stay short
+        return Integer.highestOneBit(Math.max(2, entries) * 2 - 1) * 2;
+    }
+
+    private boolean arenaEquals(int arenaOffset, byte[] bytes, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            if (arena[arenaOffset + i] != bytes[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int findEmptySlot(int hash) {
+        int slot = hash & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int findSlotOf(int entry) {
+        int slot = hashes[entry] & mask;
+        while (slots[slot] != entry + 1) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Copies a word into the arena.
+     *
+     * @return The word's offset in the arena.
+     */
+    private int store(byte[] bytes, int offset, int length) {
+        if (arenaUsed + length > arena.length) {
+            if (arenaGarbage > arenaUsed / 2) {
+                compactArena();
+            }
+            if (arenaUsed + length > arena.length) {
+                arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaUsed + length));
+            }
+        }
+        System.arraycopy(bytes, offset, arena, arenaUsed, length);
+        int stored = arenaUsed;
+        arenaUsed += length;
+        return stored;
+    }
+
+    /**
+     * Drops the bytes of evicted words from the arena.
+     */
+    private void compactArena() {
+        byte[] compacted = new byte[arena.length];
+        int used = 0;
+        for (int entry = 0; entry < size; entry++) {
+            System.arraycopy(arena, offsets[entry], compacted, used, lengths[entry]);
+            offsets[entry] = used;
+            used += lengths[entry];
+        }
+        arena = compacted;
+        arenaUsed = used;
+        arenaGarbage = 0;
+    }
+
+    /**
+     * Doubles the entry arrays (up to the limit) and rebuilds the hash table for them.
+     */
+    private void grow() {
+        int entries = (int) Math.min((long) hashes.length * 2, maxDistinct);
+        hashes = Arrays.copyOf(hashes, entries);
+        offsets = Arrays.copyOf(offsets, entries);
+        lengths = Arrays.copyOf(lengths, entries);
+        counts = Arrays.copyOf(counts, entries);
+
+        slots = new int[tableSizeFor(entries)];
+        mask = slots.length - 1;
+        for (int entry = 0; entry < size; entry++) {
+            slots[findEmptySlot(hashes[entry])] = entry + 1;
+        }
+    }
+
+    /**
+     * Switches to Space-Saving: builds the min-heap over the current, exact counts.
+     */
+    private void startApproximating() {
+        approximate = true;
+        errors = new long[size];
+        heap = new int[size];
+        heapPosition = new int[size];
+        for (int entry = 0; entry < size; entry++) {
+            heap[entry] = entry;
+            heapPosition[entry] = entry;
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * Gives the least frequent entry to a new word, which inherits its count as error.
+     */
+    private void replaceLeastFrequent(int hash, byte[] bytes, int offset, int length) {
+        int entry = heap[0];
+        long minimum = counts[entry];
+
+        removeSlot(findSlotOf(entry));
+        arenaGarbage += lengths[entry];
+
+        // Zero length first, so a compaction during store does not keep the evicted bytes
+        lengths[entry] = 0;
+        offsets[entry] = store(bytes, offset, length);
+        lengths[entry] = length;
+        hashes[entry] = hash;
+        counts[entry] = minimum + 1;
+        errors[entry] = minimum;
+        slots[findEmptySlot(hash)] = entry + 1;
+        siftDown(0);
+    }
+
+    /**
+     * Empties a slot, moving later entries of the same probe sequence back so lookups still find them.
+     */
+    private void removeSlot(int hole) {
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            int entry = slots[slot] - 1;
+            if (entry < 0) {
+                break;
+            }
+            int home = hashes[entry] & mask;
+            // The entry may move into the hole if the hole lies between its home slot and its current slot
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                slots[hole] = slots[slot];
+                hole = slot;
+            }
+        }
+        slots[hole] = 0;
+    }
+
+    /**
+     * Restores the heap order below a position whose count has grown.
+     */
+    private void siftDown(int position) {
+        int entry = heap[position];
+        long count = counts[entry];
+        while (true) {
+            int child = position * 2 + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if (counts[heap[child]] >= count) {
+                break;
+            }
+            heap[position] = heap[child];
+            heapPosition[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = entry;
+        heapPosition[entry] = position;
+    }
+}
@@ -0,0 +1,16 @@
+/**
+ * WordSink.java
+ *
+ * Receives the words a WordTokenizer finds, as UTF-8 bytes.
+ */
+public interface WordSink {
+
+    /**
+     * Receives one word.
+     *
+     * @param bytes  Buffer holding the word; only valid during the call.
+     * @param offset Index of the word's first byte.
+     * @param length Number of bytes in the word.
+     */
+    void word(byte[] bytes, int offset, int length);
+}
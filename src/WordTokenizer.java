@@ -0,0 +1,80 @@
+import java.nio.ByteBuffer;
+
+/**
+ * WordTokenizer.java
+ *
+ * Splits the UTF-8 content seen by a TextInspector into words and hands each
+ * one to a WordSink as raw bytes, without creating a String per word. A word
+ * that is cut by a chunk boundary is carried over to the next chunk.
+ *
+ * Words are runs of bytes between ASCII whitespace and control characters
+ * (every byte up to ' '). For ordinary text these are exactly the words the
+ * word count sees; text that uses control characters inside words is split
+ * a little more finely here.
+ */
+public class WordTokenizer implements ContentObserver {
+
+    // Longer words are cut off at this many bytes (a line of base64 is not a word anyone wants to rank)
+    private static final int MAX_WORD_BYTES = 256;
+
+    private final WordSink sink;
+    private final byte[] word = new byte[MAX_WORD_BYTES];
+    private int wordLength = 0;
+    private boolean inWord = false;
+
+    /**
+     * Creates a tokenizer.
+     *
+     * @param sink Receiver of the words.
+     */
+    public WordTokenizer(WordSink sink) {
+        this.sink = sink;
+    }
+
+    @Override
+    public void accept(ByteBuffer chunk) {
+        int end = chunk.limit();
+        for (int i = chunk.position(); i < end; i++) {
+            byte b = chunk.get(i);
+            // Bytes of multi-byte UTF-8 sequences are negative, so they always belong to a word
+            if (b >= 0 && b <= ' ') {
+                if (inWord) {
+                    endWord();
+                }
+            } else {
+                inWord = true;
+                if (wordLength < MAX_WORD_BYTES) {
+                    word[wordLength++] = b;
+                }
+            }
+        }
+    }
+
+    /**
+     * Hands over the last word. Must be called once after the last chunk.
+     */
+    public void finish() {
+        if (inWord) {
+            endWord();
+        }
+    }
+
+    private void endWord() {
+        int length = wordLength;
+        if (length == MAX_WORD_BYTES) {
+            // Do not end a cut-off word in the middle of a UTF-8 sequence
+            int lead = length - 1;
+            while (lead > 0 && (word[lead] & 0xC0) == 0x80) {
+                lead--;
+            }
+            int first = word[lead] & 0xFF;
+            int sequence = first >= 0xF0 ? 4 : first >= 0xE0 ? 3 : first >= 0xC0 ? 2 : 1;
+            if (lead + sequence > length) {
+                length = lead;
+            }
+        }
+        sink.word(word, 0, length);
+        wordLength = 0;
+        inWord = false;
+    }
+}